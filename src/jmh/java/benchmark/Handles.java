@@ -0,0 +1,96 @@
+package benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Looks up the methods being benchmarked. The project classes live in the
+ * default package, which cannot be imported from the named package that JMH
+ * requires, so the benchmarks call them through method handles instead. Handles
+ * stored in {@code static final} fields are treated as constants by the JIT
+ * compiler and inlined, so this adds no measurable overhead.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Summer 2021
+ */
+public class Handles {
+	/** Used to look up every handle. */
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+	/** Prevent instantiating this class of static methods. */
+	private Handles() {
+	}
+
+	/**
+	 * Loads a class from the default package.
+	 *
+	 * @param name the binary name of the class
+	 * @return the class
+	 */
+	public static Class<?> type(String name) {
+		try {
+			return Class.forName(name);
+		}
+		catch (ClassNotFoundException e) {
+			throw new IllegalStateException("Unable to find " + name + ".", e);
+		}
+	}
+
+	/**
+	 * Returns a handle for a public static method, adapted to the exact type
+	 * provided so that it may be called with {@link MethodHandle#invokeExact}.
+	 *
+	 * @param owner the binary name of the class declaring the method
+	 * @param name the name of the method
+	 * @param type the type of the method
+	 * @return the method handle
+	 */
+	public static MethodHandle findStatic(String owner, String name, MethodType type) {
+		try {
+			return LOOKUP.findStatic(type(owner), name, type);
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Unable to find " + owner + "." + name + ".", e);
+		}
+	}
+
+	/**
+	 * Returns a handle for a public instance method, with the receiver adapted
+	 * to {@link Object} so that it may be called with
+	 * {@link MethodHandle#invokeExact}.
+	 *
+	 * @param owner the binary name of the class declaring the method
+	 * @param name the name of the method
+	 * @param type the type of the method, not including the receiver
+	 * @return the method handle
+	 */
+	public static MethodHandle findVirtual(String owner, String name, MethodType type) {
+		try {
+			return LOOKUP.findVirtual(type(owner), name, type).asType(type.insertParameterTypes(0, Object.class));
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Unable to find " + owner + "." + name + ".", e);
+		}
+	}
+
+	/**
+	 * Returns a handle for a public constructor, with the parameter types and
+	 * result adapted to the exact type provided so that it may be called with
+	 * {@link MethodHandle#invokeExact}.
+	 *
+	 * @param owner the binary name of the class to construct
+	 * @param parameters the actual parameter types of the constructor
+	 * @param exact the adapted type of the handle
+	 * @return the method handle
+	 */
+	public static MethodHandle findConstructor(String owner, MethodType parameters, MethodType exact) {
+		try {
+			return LOOKUP.findConstructor(type(owner), parameters).asType(exact);
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Unable to find " + owner + " constructor.", e);
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package benchmark;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the single-threaded and multithreaded approaches to finding primes.
+ * Each benchmark reports throughput and sampled latency percentiles. Add
+ * {@code -prof gc} to the command line to also report allocation per operation.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Summer 2021
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class PrimeFinderBenchmark {
+	/** Calls {@code PrimeFinder.isPrime(int)}. */
+	private static final MethodHandle IS_PRIME = Handles.findStatic("PrimeFinder", "isPrime",
+			methodType(boolean.class, int.class));
+
+	/** Calls {@code Primality.isPrime(int)}. */
+	private static final MethodHandle MILLER_RABIN = Handles.findStatic("Primality", "isPrime",
+			methodType(boolean.class, int.class));
+
+	/** Calls {@code PrimeFinder.trialDivision(int)}. */
+	private static final MethodHandle TRIAL_DIVISION = Handles.findStatic("PrimeFinder", "trialDivision",
+			methodType(TreeSet.class, int.class));
+
+	/** The engine type used to find primes with multiple threads. */
+	private static final Class<?> ENGINE = Handles.type("PrimeFinder$Engine");
+
+	/** Calls {@code PrimeFinder.findPrimes(int, int, Engine)}. */
+	private static final MethodHandle FIND_PRIMES = Handles.findStatic("PrimeFinder", "findPrimes",
+			methodType(TreeSet.class, int.class, int.class, ENGINE))
+			.asType(methodType(TreeSet.class, int.class, int.class, Object.class));
+
+	/**
+	 * The maximum value to evaluate if prime.
+	 */
+	@State(Scope.Benchmark)
+	public static class Range {
+		/** The maximum value to evaluate if prime. */
+		@Param({ "1000", "5000", "20000" })
+		public int max;
+	}
+
+	/**
+	 * The number of worker threads to use.
+	 */
+	@State(Scope.Benchmark)
+	public static class Pool {
+		/** The number of worker threads to use. */
+		@Param({ "1", "2", "3", "5" })
+		public int threads;
+	}
+
+	/**
+	 * The engine used to split the work between worker threads.
+	 */
+	@State(Scope.Benchmark)
+	public static class Engine {
+		/** The name of the engine to use. */
+		@Param({ "WORK_QUEUE", "FORK_JOIN" })
+		public String engine;
+
+		/** The engine constant. */
+		private Object constant;
+
+		/**
+		 * Looks up the engine constant before any measurements are made.
+		 */
+		@Setup(Level.Trial)
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		public void setup() {
+			constant = Enum.valueOf((Class) ENGINE, engine);
+		}
+	}
+
+	/**
+	 * A single number to test, chosen to be prime so the entire loop runs.
+	 */
+	@State(Scope.Benchmark)
+	public static class Number {
+		/** The number to test. */
+		@Param({ "97", "7919", "104729" })
+		public int number;
+	}
+
+	/**
+	 * Tests whether a single number is prime.
+	 *
+	 * @param number the number to test
+	 * @return whether the number is prime
+	 * @throws Throwable if the benchmarked method throws an exception
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public boolean isPrime(Number number) throws Throwable {
+		return (boolean) IS_PRIME.invokeExact(number.number);
+	}
+
+	/**
+	 * Tests whether a single number is prime using Miller-Rabin.
+	 *
+	 * @param number the number to test
+	 * @return whether the number is prime
+	 * @throws Throwable if the benchmarked method throws an exception
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public boolean millerRabin(Number number) throws Throwable {
+		return (boolean) MILLER_RABIN.invokeExact(number.number);
+	}
+
+	/**
+	 * Finds primes with a single thread.
+	 *
+	 * @param range the maximum value to evaluate if prime
+	 * @return the primes found
+	 * @throws Throwable if the benchmarked method throws an exception
+	 */
+	@Benchmark
+	public TreeSet<?> trialDivision(Range range) throws Throwable {
+		return (TreeSet<?>) TRIAL_DIVISION.invokeExact(range.max);
+	}
+
+	/**
+	 * Finds primes with multiple threads, including the cost of creating and
+	 * joining the worker threads.
+	 *
+	 * @param range the maximum value to evaluate if prime
+	 * @param pool the number of worker threads to use
+	 * @param engine the engine used to split the work
+	 * @return the primes found
+	 * @throws Throwable if the benchmarked method throws an exception
+	 */
+	@Benchmark
+	public TreeSet<?> findPrimes(Range range, Pool pool, Engine engine) throws Throwable {
+		return (TreeSet<?>) FIND_PRIMES.invokeExact(range.max, pool.threads, engine.constant);
+	}
+}
@@ -0,0 +1,143 @@
+package benchmark;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the overhead of the work queue itself by submitting batches of
+ * empty and tiny tasks and waiting for them to finish. Scores are reported per
+ * task. Add {@code -prof gc} to the command line to also report allocation per
+ * task.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Summer 2021
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class WorkQueueBenchmark {
+	/** Number of tasks submitted before waiting for them to finish. */
+	public static final int BATCH = 1000;
+
+	/** Number of CPU-burning tokens consumed by each tiny task. */
+	public static final int TOKENS = 50;
+
+	/** The work queue type. */
+	private static final String QUEUE = "WorkQueue";
+
+	/** The scheduling policy type. */
+	private static final Class<?> SCHEDULING = Handles.type(QUEUE + "$Scheduling");
+
+	/** Creates a work queue with a number of threads and scheduling policy. */
+	private static final MethodHandle CREATE = Handles.findConstructor(QUEUE,
+			methodType(void.class, int.class, SCHEDULING),
+			methodType(Object.class, int.class, Object.class));
+
+	/** Calls {@code WorkQueue.execute(Runnable)}. */
+	private static final MethodHandle EXECUTE = Handles.findVirtual(QUEUE, "execute",
+			methodType(void.class, Runnable.class));
+
+	/** Calls {@code WorkQueue.finish()}. */
+	private static final MethodHandle FINISH = Handles.findVirtual(QUEUE, "finish", methodType(void.class));
+
+	/** Calls {@code WorkQueue.join()}. */
+	private static final MethodHandle JOIN = Handles.findVirtual(QUEUE, "join", methodType(void.class));
+
+	/** The number of worker threads to use. */
+	@Param({ "1", "2", "5" })
+	public int threads;
+
+	/** The name of the scheduling policy to use. */
+	@Param({ "SHARED", "STEALING" })
+	public String scheduling;
+
+	/** The work queue being benchmarked. */
+	private Object queue;
+
+	/** A task that does nothing. */
+	private final Runnable empty = () -> {
+	};
+
+	/** A task that does a tiny but fixed amount of work. */
+	private final Runnable tiny = () -> Blackhole.consumeCPU(TOKENS);
+
+	/**
+	 * Starts the work queue before any measurements are made.
+	 *
+	 * @throws Throwable if unable to create the work queue
+	 */
+	@Setup(Level.Trial)
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void setup() throws Throwable {
+		Object policy = Enum.valueOf((Class) SCHEDULING, scheduling);
+		queue = (Object) CREATE.invokeExact(threads, policy);
+	}
+
+	/**
+	 * Stops the work queue after all measurements are made.
+	 *
+	 * @throws Throwable if unable to join the work queue
+	 */
+	@TearDown(Level.Trial)
+	public void teardown() throws Throwable {
+		JOIN.invokeExact(queue);
+	}
+
+	/**
+	 * Submits a batch of tasks and waits for them to finish.
+	 *
+	 * @param task the task to submit
+	 * @throws Throwable if the work queue throws an exception
+	 */
+	private void batch(Runnable task) throws Throwable {
+		for (int i = 0; i < BATCH; i++) {
+			EXECUTE.invokeExact(queue, task);
+		}
+
+		FINISH.invokeExact(queue);
+	}
+
+	/**
+	 * Submits a batch of empty tasks and waits for them to finish.
+	 *
+	 * @throws Throwable if the work queue throws an exception
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void emptyTasks() throws Throwable {
+		batch(empty);
+	}
+
+	/**
+	 * Submits a batch of tiny tasks and waits for them to finish.
+	 *
+	 * @throws Throwable if the work queue throws an exception
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void tinyTasks() throws Throwable {
+		batch(tiny);
+	}
+}
@@ -0,0 +1,58 @@
+import java.util.concurrent.CancellationException;
+
+/**
+ * Lets a caller cancel a single job, such as one call to
+ * {@link PrimeFinder#findPrimes(int, int, CancellationToken)}, without
+ * affecting any other job. Every task of the job shares the same token, and
+ * long-running tasks call {@link #check()} between small units of work (such
+ * as each segment of a sieve). Checking reads a volatile flag and the
+ * interrupted status of the current thread, without locking or allocating,
+ * so tasks can afford to check often enough to stop within milliseconds.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Summer 2021
+ */
+public class CancellationToken {
+	/** Whether the job has been cancelled. */
+	private volatile boolean cancelled;
+
+	/**
+	 * Initializes a token for a job that has not been cancelled.
+	 */
+	public CancellationToken() {
+		this.cancelled = false;
+	}
+
+	/**
+	 * Cancels the job. Tasks that have already started stop at their next
+	 * check, and tasks that have not started yet stop at their first check.
+	 * Cancelling more than once has no further effect.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Returns whether the job has been cancelled.
+	 *
+	 * @return true if the job has been cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Throws an exception if the job has been cancelled or the current thread
+	 * has been interrupted, such as by {@link WorkQueue#shutdownNow()}. Costs
+	 * a volatile read plus a call to {@link Thread#isInterrupted()}, and does
+	 * not clear the interrupted status of the thread.
+	 *
+	 * @throws CancellationException if the task should stop
+	 */
+	public void check() {
+		if (cancelled || Thread.currentThread().isInterrupted()) {
+			throw new CancellationException("Job was cancelled.");
+		}
+	}
+}
@@ -0,0 +1,515 @@
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Factors values into primes. Values up to a limit are factored with a
+ * precomputed table of smallest prime factors, so each factor only takes a
+ * table lookup and a division. Larger values fall back to Pollard's rho
+ * algorithm (with Brent's cycle detection) to split off factors, and to
+ * {@link Primality#isPrime(long)} to recognize when a factor is prime.
+ *
+ * <p>The table only stores odd values, as the index of the smallest prime
+ * factor within the base primes instead of the factor itself, so it uses one
+ * byte per value covered. A factorizer is never modified after it is created,
+ * so a single instance may be shared by any number of threads.
+ *
+ * @see <a href="https://en.wikipedia.org/wiki/Pollard%27s_rho_algorithm">
+ * Pollard's Rho Algorithm</a>
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Summer 2021
+ */
+public class Factorizer {
+	/** Default largest value covered by the table, which uses 16 MiB. */
+	public static final int DEFAULT_LIMIT = 1 << 24;
+
+	/**
+	 * Largest number of prime factors (counting repeats) of any value, which
+	 * is also the smallest length of the buffer passed to
+	 * {@link #factor(long, long[])}.
+	 */
+	public static final int MAX_FACTORS = 64;
+
+	/**
+	 * Values past the table are divided by the base primes up to this value
+	 * before falling back to Pollard's rho, which is slow to find small factors.
+	 */
+	private static final int TRIAL_LIMIT = 1 << 10;
+
+	/** Number of steps of Pollard's rho between each greatest common divisor. */
+	private static final int RHO_BATCH = 128;
+
+	/** The largest value covered by the table. */
+	private final int limit;
+
+	/** The primes up to the square root of the limit. */
+	private final int[] primes;
+
+	/**
+	 * For each odd value {@code 2i + 1} up to the limit, the index within the
+	 * primes of its smallest prime factor, or 0 if the value is prime.
+	 */
+	private final char[] smallest;
+
+	/**
+	 * Initializes a factorizer with the default table size.
+	 *
+	 * @see #DEFAULT_LIMIT
+	 */
+	public Factorizer() {
+		this(DEFAULT_LIMIT);
+	}
+
+	/**
+	 * Initializes a factorizer, computing the table of smallest prime factors up
+	 * to the limit.
+	 *
+	 * @param limit the largest value covered by the table
+	 */
+	public Factorizer(int limit) {
+		this.limit = Math.max(limit, 1);
+		this.primes = PrimeSieve.basePrimes(PrimeSieve.sqrt(this.limit));
+		this.smallest = new char[(this.limit - 1) / 2 + 1];
+
+		// the odd primes are sieved from smallest to largest, so each value keeps
+		// the first (and smallest) prime that marks it
+		for (int k = 1; k < primes.length; k++) {
+			long prime = primes[k];
+
+			for (long i = prime * prime / 2; i < smallest.length; i += prime) {
+				if (smallest[(int) i] == 0) {
+					smallest[(int) i] = (char) k;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the largest value covered by the table of smallest prime factors.
+	 *
+	 * @return the limit of the table
+	 */
+	public int limit() {
+		return limit;
+	}
+
+	/**
+	 * Factors the value into primes, writing each prime factor (repeated for
+	 * each time it divides the value) to the buffer in increasing order. Values
+	 * less than 2 have no prime factors.
+	 *
+	 * @param value the value to factor
+	 * @param factors the buffer of at least {@link #MAX_FACTORS} values, which
+	 *   is also used as scratch space
+	 * @return the number of prime factors written to the buffer
+	 * @throws IllegalArgumentException if the buffer is too small
+	 */
+	public int factor(long value, long[] factors) {
+		if (factors.length < MAX_FACTORS) {
+			throw new IllegalArgumentException("Buffer must hold at least " + MAX_FACTORS + " factors.");
+		}
+
+		if (value < 2) {
+			return 0;
+		}
+
+		int count = 0;
+		int twos = Long.numberOfTrailingZeros(value);
+
+		for (int i = 0; i < twos; i++) {
+			factors[count++] = 2;
+		}
+
+		long rest = value >>> twos;
+
+		for (int k = 1; k < primes.length && primes[k] <= TRIAL_LIMIT && rest > limit; k++) {
+			while (rest % primes[k] == 0) {
+				factors[count++] = primes[k];
+				rest /= primes[k];
+			}
+		}
+
+		// composite factors still to split are kept at the end of the buffer, and
+		// never overlap the prime factors since every split adds a prime factor
+		int top = factors.length;
+		factors[--top] = rest;
+
+		while (top < factors.length) {
+			long next = factors[top++];
+
+			if (next <= limit) {
+				count = lookup((int) next, factors, count);
+			}
+			else if (Primality.isPrime(next)) {
+				factors[count++] = next;
+			}
+			else {
+				long divisor = rho(next);
+				factors[--top] = divisor;
+				factors[--top] = next / divisor;
+			}
+		}
+
+		// the factors split off by rho may be out of order
+		Arrays.sort(factors, 0, count);
+		return count;
+	}
+
+	/**
+	 * Factors an odd value covered by the table, in increasing order.
+	 *
+	 * @param value the odd value to factor
+	 * @param factors the buffer to write the prime factors to
+	 * @param count the number of prime factors already in the buffer
+	 * @return the new number of prime factors in the buffer
+	 */
+	private int lookup(int value, long[] factors, int count) {
+		while (value > 1) {
+			int index = smallest[value >>> 1];
+			int prime = index == 0 ? value : primes[index];
+
+			factors[count++] = prime;
+			value /= prime;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Finds a nontrivial (but not necessarily prime) factor of an odd composite
+	 * value using Pollard's rho algorithm with Brent's cycle detection. The
+	 * differences are multiplied together so that only one greatest common
+	 * divisor is needed per batch of steps.
+	 *
+	 * @param value the odd composite value
+	 * @return a factor of the value greater than 1 and less than the value
+	 */
+	private static long rho(long value) {
+		Primality.Montgomery modulus = new Primality.Montgomery(value);
+
+		// a different constant is tried whenever the cycle finds no factor
+		for (long c = 1; ; c++) {
+			long y = 2;
+			long x = y;
+			long saved = y;
+			long product = 1;
+			long divisor = 1;
+
+			for (int length = 1; divisor == 1; length <<= 1) {
+				x = y;
+
+				for (int i = 0; i < length; i++) {
+					y = modulus.add(modulus.multiply(y, y), c);
+				}
+
+				for (int k = 0; k < length && divisor == 1; k += RHO_BATCH) {
+					saved = y;
+
+					for (int i = 0; i < Math.min(RHO_BATCH, length - k); i++) {
+						y = modulus.add(modulus.multiply(y, y), c);
+						product = modulus.multiply(product, Math.abs(x - y));
+					}
+
+					divisor = gcd(product, value);
+				}
+			}
+
+			if (divisor == value) {
+				// the batch overshot, so step through it one at a time
+				do {
+					saved = modulus.add(modulus.multiply(saved, saved), c);
+					divisor = gcd(Math.abs(x - saved), value);
+				} while (divisor == 1);
+			}
+
+			if (divisor != value) {
+				return divisor;
+			}
+		}
+	}
+
+	/**
+	 * Returns the greatest common divisor of two non-negative values using the
+	 * binary GCD algorithm, which avoids division.
+	 *
+	 * @param a the first value
+	 * @param b the second value
+	 * @return the greatest common divisor
+	 */
+	private static long gcd(long a, long b) {
+		if (a == 0 || b == 0) {
+			return a | b;
+		}
+
+		int shift = Long.numberOfTrailingZeros(a | b);
+		a >>>= Long.numberOfTrailingZeros(a);
+
+		while (b != 0) {
+			b >>>= Long.numberOfTrailingZeros(b);
+
+			if (a > b) {
+				long swap = a;
+				a = b;
+				b = swap;
+			}
+
+			b -= a;
+		}
+
+		return a << shift;
+	}
+
+	/**
+	 * Factors the first length values without any worker threads.
+	 *
+	 * @param values the values to factor
+	 * @param length the number of values to factor
+	 * @param results the reusable buffer for the prime factors of each value
+	 *
+	 * @see #factorAll(long[], int, Factors, WorkQueue)
+	 */
+	public void factorAll(long[] values, int length, Factors results) {
+		results.reset(length, 1);
+		factorChunk(values, length, results, 0, 1);
+		results.pack(length, 1);
+	}
+
+	/**
+	 * Factors the first length values, splitting them between the workers of
+	 * the work queue. The results replace the previous contents of the buffer.
+	 * Once the buffer has grown large enough, factoring another batch of the
+	 * same size does not allocate any more memory for the results.
+	 *
+	 * @param values the values to factor
+	 * @param length the number of values to factor
+	 * @param results the reusable buffer for the prime factors of each value
+	 * @param queue the work queue to use
+	 */
+	public void factorAll(long[] values, int length, Factors results, WorkQueue queue) {
+		int chunks = Math.max(1, Math.min(length, queue.size() * WorkQueue.CHUNKS_PER_WORKER));
+		results.reset(length, chunks);
+
+		try {
+			// at most one chunk per work request, so each chunk gets its own scratch
+			queue.invokeRange(0, chunks - 1, (start, end) -> {
+				for (int chunk = start; chunk <= end; chunk++) {
+					factorChunk(values, length, results, chunk, chunks);
+				}
+
+				return null;
+			});
+		}
+		catch (InterruptedException e) {
+			System.err.println("Warning: Interrupted while factoring.");
+			Thread.currentThread().interrupt();
+			return;
+		}
+		catch (ExecutionException e) {
+			throw new IllegalStateException("Unable to factor values.", e.getCause());
+		}
+
+		results.pack(length, chunks);
+	}
+
+	/**
+	 * Factors one chunk of the values into the scratch space for that chunk.
+	 *
+	 * @param values the values to factor
+	 * @param length the number of values to factor
+	 * @param results the buffer for the results
+	 * @param chunk the index of the chunk
+	 * @param chunks the total number of chunks
+	 */
+	private void factorChunk(long[] values, int length, Factors results, int chunk, int chunks) {
+		int first = (int) ((long) length * chunk / chunks);
+		int last = (int) ((long) length * (chunk + 1) / chunks);
+
+		long[] single = results.singles[chunk];
+		int used = 0;
+
+		for (int i = first; i < last; i++) {
+			int count = factor(values[i], single);
+
+			if (used + count > results.scratch[chunk].length) {
+				results.scratch[chunk] = Arrays.copyOf(results.scratch[chunk], Math.max(used + count, used * 2));
+			}
+
+			System.arraycopy(single, 0, results.scratch[chunk], used, count);
+			results.counts[i] = count;
+			used += count;
+		}
+	}
+
+	/**
+	 * A reusable buffer of the prime factors of a batch of values. The factors
+	 * of every value are stored back to back in a single array, so value
+	 * {@code i} has {@link #count(int)} factors starting at {@link #offset(int)}.
+	 * The arrays only grow when a batch needs more room than any before it.
+	 */
+	public static class Factors {
+		/** The number of values in the current batch. */
+		private int size;
+
+		/** The number of prime factors of each value. */
+		private int[] counts;
+
+		/** Where the prime factors of each value start, plus the total at the end. */
+		private int[] offsets;
+
+		/** The prime factors of every value, back to back. */
+		private long[] factors;
+
+		/** The prime factors found by each chunk, before they are packed. */
+		private long[][] scratch;
+
+		/** Space to factor a single value, for each chunk. */
+		private long[][] singles;
+
+		/**
+		 * Initializes an empty buffer.
+		 */
+		public Factors() {
+			this.size = 0;
+			this.counts = new int[0];
+			this.offsets = new int[1];
+			this.factors = new long[0];
+			this.scratch = new long[0][];
+			this.singles = new long[0][];
+		}
+
+		/**
+		 * Makes room for a batch of values split into chunks.
+		 *
+		 * @param length the number of values
+		 * @param chunks the number of chunks
+		 */
+		private void reset(int length, int chunks) {
+			if (counts.length < length) {
+				counts = new int[length];
+				offsets = new int[length + 1];
+			}
+
+			if (scratch.length < chunks) {
+				int before = scratch.length;
+				scratch = Arrays.copyOf(scratch, chunks);
+				singles = Arrays.copyOf(singles, chunks);
+
+				for (int i = before; i < chunks; i++) {
+					scratch[i] = new long[MAX_FACTORS];
+					singles[i] = new long[MAX_FACTORS];
+				}
+			}
+
+			size = 0;
+		}
+
+		/**
+		 * Copies the factors found by each chunk into a single array, in order.
+		 *
+		 * @param length the number of values
+		 * @param chunks the number of chunks
+		 */
+		private void pack(int length, int chunks) {
+			offsets[0] = 0;
+
+			for (int i = 0; i < length; i++) {
+				offsets[i + 1] = offsets[i] + counts[i];
+			}
+
+			if (factors.length < offsets[length]) {
+				factors = new long[offsets[length]];
+			}
+
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				int first = (int) ((long) length * chunk / chunks);
+				int last = (int) ((long) length * (chunk + 1) / chunks);
+				int used = offsets[last] - offsets[first];
+
+				System.arraycopy(scratch[chunk], 0, factors, offsets[first], used);
+			}
+
+			size = length;
+		}
+
+		/**
+		 * Returns the number of values in the current batch.
+		 *
+		 * @return the number of values factored
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Returns the number of prime factors (counting repeats) of a value.
+		 *
+		 * @param index the index of the value in the batch
+		 * @return the number of prime factors
+		 */
+		public int count(int index) {
+			checkIndex(index);
+			return counts[index];
+		}
+
+		/**
+		 * Returns where the prime factors of a value start in {@link #factors()}.
+		 *
+		 * @param index the index of the value in the batch
+		 * @return the offset of the first prime factor
+		 */
+		public int offset(int index) {
+			checkIndex(index);
+			return offsets[index];
+		}
+
+		/**
+		 * Returns one of the prime factors of a value.
+		 *
+		 * @param index the index of the value in the batch
+		 * @param k the index of the prime factor, in increasing order
+		 * @return the prime factor
+		 */
+		public long get(int index, int k) {
+			if (k < 0 || k >= count(index)) {
+				throw new IndexOutOfBoundsException(k);
+			}
+
+			return factors[offsets[index] + k];
+		}
+
+		/**
+		 * Returns the array backing this buffer, which holds the prime factors
+		 * of every value back to back. Must not be modified, and is only valid
+		 * until the next batch is factored into this buffer.
+		 *
+		 * @return the backing array of prime factors
+		 */
+		public long[] factors() {
+			return factors;
+		}
+
+		/**
+		 * Checks the index is within the current batch.
+		 *
+		 * @param index the index of the value in the batch
+		 */
+		private void checkIndex(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException(index);
+			}
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder("[");
+
+			for (int i = 0; i < size; i++) {
+				builder.append(i == 0 ? "" : ", ");
+				builder.append(Arrays.toString(Arrays.copyOfRange(factors, offsets[i], offsets[i + 1])));
+			}
+
+			return builder.append("]").toString();
+		}
+	}
+}
@@ -0,0 +1,159 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of non-negative durations (in nanoseconds) with a
+ * fixed memory footprint, similar to an HDR histogram. Values are grouped into
+ * buckets by power of two, and each power of two is split into
+ * {@value #SUB_BUCKETS} linear sub-buckets, so reported percentiles are within
+ * about 6% of the true value across the entire range. Recording a value never
+ * allocates memory.
+ *
+ * @see <a href="http://hdrhistogram.org/">HdrHistogram</a>
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Summer 2021
+ */
+public class LatencyHistogram {
+	/** Number of bits used to index the linear sub-buckets. */
+	private static final int SUB_BITS = 4;
+
+	/** Number of linear sub-buckets per power of two. */
+	public static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	/** Number of buckets needed to cover every non-negative long value. */
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+	/** Number of values recorded in each bucket. */
+	private final AtomicLongArray counts;
+
+	/** Total number of values recorded. */
+	private final LongAdder count;
+
+	/** Sum of all values recorded. */
+	private final LongAdder sum;
+
+	/** Largest value recorded. */
+	private final LongAccumulator max;
+
+	/**
+	 * Initializes an empty histogram.
+	 */
+	public LatencyHistogram() {
+		this.counts = new AtomicLongArray(BUCKETS);
+		this.count = new LongAdder();
+		this.sum = new LongAdder();
+		this.max = new LongAccumulator(Math::max, 0);
+	}
+
+	/**
+	 * Returns the bucket for a value.
+	 *
+	 * @param value the non-negative value
+	 * @return the bucket index
+	 */
+	private static int bucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Returns the smallest value that falls in a bucket.
+	 *
+	 * @param bucket the bucket index
+	 * @return the smallest value in the bucket
+	 */
+	private static long lowest(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		long sub = bucket % SUB_BUCKETS;
+		return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+	}
+
+	/**
+	 * Records a single value. Negative values are recorded as 0.
+	 *
+	 * @param value the value to record
+	 */
+	public void record(long value) {
+		value = Math.max(0, value);
+		counts.incrementAndGet(bucket(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * Returns the number of values recorded.
+	 *
+	 * @return number of values recorded
+	 */
+	public long count() {
+		return count.sum();
+	}
+
+	/**
+	 * Returns the average value recorded, or 0 if nothing has been recorded.
+	 *
+	 * @return the average value
+	 */
+	public double mean() {
+		long total = count.sum();
+		return total == 0 ? 0 : (double) sum.sum() / total;
+	}
+
+	/**
+	 * Returns the largest value recorded, or 0 if nothing has been recorded.
+	 *
+	 * @return the largest value
+	 */
+	public long max() {
+		return max.get();
+	}
+
+	/**
+	 * Returns an estimate of the value at the given percentile, or 0 if nothing
+	 * has been recorded. The estimate is the largest value that falls in the
+	 * same bucket as the true value, capped by the largest value recorded.
+	 *
+	 * @param percentile the percentile between 0 and 100
+	 * @return the estimated value at that percentile
+	 */
+	public long percentile(double percentile) {
+		long total = count.sum();
+
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+		long seen = 0;
+
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+
+			if (seen >= rank) {
+				long highest = i + 1 < BUCKETS ? lowest(i + 1) - 1 : Long.MAX_VALUE;
+				return Math.min(highest, max());
+			}
+		}
+
+		return max();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d, mean=%.0fns, p50=%dns, p90=%dns, p99=%dns, max=%dns",
+				count(), mean(), percentile(50), percentile(90), percentile(99), max());
+	}
+}
@@ -0,0 +1,287 @@
+/**
+ * Tests whether single values are prime using a small-prime prefilter followed
+ * by a deterministic Miller-Rabin test. Unlike {@link PrimeFinder#isPrime(int)},
+ * which may need billions of divisions, every test here takes at most a few
+ * hundred modular multiplications no matter the magnitude of the value.
+ *
+ * <p>The witness sets are known to give the correct answer for every value in
+ * their range, so the results are exact rather than probabilistic.
+ *
+ * @see <a href="https://en.wikipedia.org/wiki/Miller%E2%80%93Rabin_primality_test#Testing_against_small_sets_of_bases">
+ * Miller-Rabin: Testing against small sets of bases</a>
+ * @see <a href="https://miller-rabin.appspot.com/">Deterministic variants of the
+ * Miller-Rabin primality test</a>
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Summer 2021
+ */
+public class Primality {
+	/** Primes used to quickly reject most composites before Miller-Rabin. */
+	private static final int[] SMALL = { 2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53 };
+
+	/** Values below this are prime if they have no factor in {@link #SMALL}. */
+	private static final int SMALL_LIMIT = 59 * 59;
+
+	/** Witnesses that are correct for every value below 4,759,123,141. */
+	private static final int[] INT_WITNESSES = { 2, 7, 61 };
+
+	/** Witnesses that are correct for every value below 2^64. */
+	private static final long[] LONG_WITNESSES = { 2, 325, 9375, 28178, 450775, 9780504, 1795265022 };
+
+	/** Values below this may be multiplied directly without overflowing. */
+	private static final long DIRECT_LIMIT = 3037000499L;
+
+	/** Prevent instantiating this class of static methods. */
+	private Primality() {
+	}
+
+	/**
+	 * Checks the value against the small primes.
+	 *
+	 * @param value the value to test
+	 * @return 1 if the value is prime, 0 if composite, or -1 if unknown
+	 */
+	private static int prefilter(long value) {
+		if (value < 2) {
+			return 0;
+		}
+
+		for (int prime : SMALL) {
+			if (value % prime == 0) {
+				return value == prime ? 1 : 0;
+			}
+		}
+
+		return value < SMALL_LIMIT ? 1 : -1;
+	}
+
+	/**
+	 * Returns whether the value is prime.
+	 *
+	 * @param value the value to test
+	 * @return true if the value is prime
+	 */
+	public static boolean isPrime(int value) {
+		int known = prefilter(value);
+
+		if (known >= 0) {
+			return known == 1;
+		}
+
+		int shift = Integer.numberOfTrailingZeros(value - 1);
+		long odd = (value - 1) >>> shift;
+
+		for (int witness : INT_WITNESSES) {
+			if (!passes(witness % value, odd, shift, value)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns whether the value is prime.
+	 *
+	 * @param value the value to test
+	 * @return true if the value is prime
+	 */
+	public static boolean isPrime(long value) {
+		if (value <= Integer.MAX_VALUE) {
+			return value >= 2 && isPrime((int) value);
+		}
+
+		if (prefilter(value) == 0) {
+			return false;
+		}
+
+		int shift = Long.numberOfTrailingZeros(value - 1);
+		long odd = (value - 1) >>> shift;
+
+		if (value < DIRECT_LIMIT) {
+			for (long witness : LONG_WITNESSES) {
+				if (!passes(witness % value, odd, shift, value)) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		Montgomery modulus = new Montgomery(value);
+
+		for (long witness : LONG_WITNESSES) {
+			if (!modulus.passes(witness % value, odd, shift)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Runs a single round of Miller-Rabin for a modulus small enough that the
+	 * product of two residues fits in a long.
+	 *
+	 * @param witness the witness, already reduced by the modulus
+	 * @param odd the odd part of {@code modulus - 1}
+	 * @param shift the power of two in {@code modulus - 1}
+	 * @param modulus the odd value being tested
+	 * @return false if the witness proves the modulus is composite
+	 */
+	private static boolean passes(long witness, long odd, int shift, long modulus) {
+		if (witness == 0) {
+			return true;
+		}
+
+		long x = 1;
+		long base = witness;
+
+		for (long e = odd; e > 0; e >>>= 1) {
+			if ((e & 1) != 0) {
+				x = x * base % modulus;
+			}
+
+			base = base * base % modulus;
+		}
+
+		if (x == 1 || x == modulus - 1) {
+			return true;
+		}
+
+		for (int i = 1; i < shift; i++) {
+			x = x * x % modulus;
+
+			if (x == modulus - 1) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Multiplies residues of a large odd modulus using Montgomery reduction, which
+	 * avoids the 128-bit division that {@code a * b % modulus} would otherwise
+	 * require. Residues are kept in Montgomery form {@code aR mod modulus}, where
+	 * {@code R} is 2^64.
+	 *
+	 * @see <a href="https://en.wikipedia.org/wiki/Montgomery_modular_multiplication">
+	 * Montgomery Modular Multiplication</a>
+	 * @see Factorizer
+	 */
+	static class Montgomery {
+		/** The odd modulus, less than 2^63. */
+		private final long modulus;
+
+		/** The negated inverse of the modulus, mod 2^64. */
+		private final long inverse;
+
+		/** The value 1 in Montgomery form. */
+		private final long one;
+
+		/** The value {@code modulus - 1} in Montgomery form. */
+		private final long minusOne;
+
+		/** The value R^2 mod modulus, used to convert into Montgomery form. */
+		private final long square;
+
+		/**
+		 * Initializes the constants for this modulus.
+		 *
+		 * @param modulus the odd modulus, less than 2^63
+		 */
+		public Montgomery(long modulus) {
+			this.modulus = modulus;
+
+			// each Newton step doubles the number of correct low bits (3, 6, ... 96)
+			long x = modulus;
+
+			for (int i = 0; i < 5; i++) {
+				x *= 2 - modulus * x;
+			}
+
+			this.inverse = -x;
+			this.one = Long.remainderUnsigned(-modulus, modulus);
+			this.minusOne = modulus - one;
+
+			long r2 = one;
+
+			for (int i = 0; i < 64; i++) {
+				r2 = add(r2, r2);
+			}
+
+			this.square = r2;
+		}
+
+		/**
+		 * Adds two residues.
+		 *
+		 * @param a the first residue
+		 * @param b the second residue
+		 * @return the sum mod the modulus
+		 */
+		public long add(long a, long b) {
+			long sum = a + b; // no overflow past 2^64 since both are below 2^63
+			return Long.compareUnsigned(sum, modulus) >= 0 ? sum - modulus : sum;
+		}
+
+		/**
+		 * Multiplies two residues in Montgomery form.
+		 *
+		 * @param a the first residue
+		 * @param b the second residue
+		 * @return the product in Montgomery form
+		 */
+		public long multiply(long a, long b) {
+			long high = Math.multiplyHigh(a, b);
+			long low = a * b;
+			long m = low * inverse;
+
+			// unsigned high bits of m * modulus, where m may be negative
+			long carry = Math.multiplyHigh(m, modulus) + ((m >> 63) & modulus);
+			long result = high + carry + (low != 0 ? 1 : 0);
+			return Long.compareUnsigned(result, modulus) >= 0 ? result - modulus : result;
+		}
+
+		/**
+		 * Runs a single round of Miller-Rabin.
+		 *
+		 * @param witness the witness, already reduced by the modulus
+		 * @param odd the odd part of {@code modulus - 1}
+		 * @param shift the power of two in {@code modulus - 1}
+		 * @return false if the witness proves the modulus is composite
+		 */
+		public boolean passes(long witness, long odd, int shift) {
+			if (witness == 0) {
+				return true;
+			}
+
+			long x = one;
+			long base = multiply(witness, square);
+
+			for (long e = odd; e > 0; e >>>= 1) {
+				if ((e & 1) != 0) {
+					x = multiply(x, base);
+				}
+
+				base = multiply(base, base);
+			}
+
+			if (x == one || x == minusOne) {
+				return true;
+			}
+
+			for (int i = 1; i < shift; i++) {
+				x = multiply(x, x);
+
+				if (x == minusOne) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+}
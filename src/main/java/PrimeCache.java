@@ -0,0 +1,261 @@
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe cache of the largest prefix of primes found so far. Queries up
+ * to the cached frontier are answered with a view of the cached primes without
+ * any sieving. Queries past the frontier only sieve from the frontier onward,
+ * and concurrent queries past the frontier are coalesced so that only one thread
+ * sieves while the others wait for its result.
+ *
+ * <p>The cached prefix never uses more than a fixed number of bytes. Queries
+ * that would need a larger prefix are still answered (by extending the cached
+ * prefix), but the result is not kept.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Summer 2021
+ */
+public class PrimeCache {
+	/** Default number of bytes the cached prefix may use. */
+	public static final long DEFAULT_BYTES = 64L << 20;
+
+	/** Number of worker threads used to sieve. */
+	private final int threads;
+
+	/** Maximum number of bytes the cached prefix may use. */
+	private final long limit;
+
+	/** The cached prefix, or null if nothing is cached. */
+	private volatile PrimeSet prefix;
+
+	/** The extension currently being sieved, or null if none. */
+	private FutureTask<PrimeSet> extension;
+
+	/** Largest max value requested while the current extension is sieved. */
+	private int wanted;
+
+	/** Number of queries answered from the cached prefix. */
+	private final LongAdder hits;
+
+	/** Number of times the primes had to be sieved. */
+	private final LongAdder extensions;
+
+	/**
+	 * Initializes an empty cache with the default size limit.
+	 *
+	 * @param threads number of worker threads used to sieve (must be positive)
+	 */
+	public PrimeCache(int threads) {
+		this(threads, DEFAULT_BYTES);
+	}
+
+	/**
+	 * Initializes an empty cache.
+	 *
+	 * @param threads number of worker threads used to sieve (must be positive)
+	 * @param limit maximum number of bytes the cached prefix may use
+	 */
+	public PrimeCache(int threads, long limit) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Must have at least one worker thread.");
+		}
+
+		this.threads = threads;
+		this.limit = limit;
+		this.prefix = null;
+		this.extension = null;
+		this.wanted = 0;
+		this.hits = new LongAdder();
+		this.extensions = new LongAdder();
+	}
+
+	/**
+	 * Returns the number of bytes used by a prime set covering the max value.
+	 *
+	 * @param max the maximum value evaluated
+	 * @return the number of bytes used by the bitset and its directory
+	 */
+	public static long bytes(int max) {
+		int words = PrimeSet.words(max);
+		return (long) words * Long.BYTES + (long) PrimeSet.blocks(words) * Integer.BYTES;
+	}
+
+	/**
+	 * Returns all primes less than or equal to the max value, sieving only the
+	 * values past the cached frontier if needed.
+	 *
+	 * @param max the maximum value to evaluate if prime
+	 * @return all prime numbers found up to and including max
+	 * @throws CancellationException if interrupted while sieving or waiting
+	 */
+	public PrimeSet primes(int max) {
+		while (true) {
+			PrimeSet current = prefix;
+
+			if (current != null && current.max() >= max) {
+				hits.increment();
+				return current.range(0, max);
+			}
+
+			FutureTask<PrimeSet> task;
+			boolean owner = false;
+
+			synchronized (this) {
+				if (prefix != current) {
+					continue; // the prefix was just extended, so check it again
+				}
+
+				if (extension == null) {
+					int target = Math.max(max, wanted);
+					extension = new FutureTask<PrimeSet>(() -> extend(current, target));
+					wanted = 0;
+					owner = true;
+				}
+				else {
+					wanted = Math.max(wanted, max);
+				}
+
+				task = extension;
+			}
+
+			if (owner) {
+				task.run();
+			}
+
+			try {
+				PrimeSet result = task.get();
+
+				// the result may be too large to cache but still cover this query
+				if (result.max() >= max) {
+					return result.range(0, max);
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CancellationException("Interrupted while waiting for primes.");
+			}
+			catch (ExecutionException e) {
+				if (!(e.getCause() instanceof CancellationException)) {
+					throw new IllegalStateException("Unable to find primes.", e.getCause());
+				}
+
+				if (owner) {
+					throw (CancellationException) e.getCause();
+				}
+
+				// only the owner was interrupted, so try again with a new extension
+			}
+		}
+	}
+
+	/**
+	 * Sieves past the cached prefix, replacing the cached prefix with the result
+	 * if it fits within the size limit. Called by the thread that owns the
+	 * current extension.
+	 *
+	 * @param current the cached prefix when the extension started
+	 * @param max the maximum value to evaluate if prime
+	 * @return all prime numbers found up to and including max
+	 */
+	private PrimeSet extend(PrimeSet current, int max) {
+		PrimeSet result = null;
+
+		try {
+			extensions.increment();
+			result = PrimeFinder.extend(current, max, threads);
+			return result;
+		}
+		finally {
+			synchronized (this) {
+				if (result != null && bytes(max) <= limit) {
+					prefix = result;
+				}
+
+				extension = null;
+			}
+		}
+	}
+
+	/**
+	 * Returns all primes less than or equal to the max value as a sorted set.
+	 *
+	 * @param max the maximum value to evaluate if prime
+	 * @return all prime numbers found up to and including max
+	 *
+	 * @see #primes(int)
+	 */
+	public TreeSet<Integer> findPrimes(int max) {
+		return new TreeSet<Integer>(primes(max).asSet());
+	}
+
+	/**
+	 * Returns the number of primes less than or equal to the max value.
+	 *
+	 * @param max the maximum value to evaluate if prime
+	 * @return the number of primes up to and including max
+	 *
+	 * @see #primes(int)
+	 */
+	public int count(int max) {
+		return primes(max).count();
+	}
+
+	/**
+	 * Returns the largest max value covered by the cached prefix, or -1 if
+	 * nothing is cached.
+	 *
+	 * @return the cached frontier
+	 */
+	public int frontier() {
+		PrimeSet current = prefix;
+		return current == null ? -1 : current.max();
+	}
+
+	/**
+	 * Returns the number of bytes used by the cached prefix.
+	 *
+	 * @return the number of bytes cached
+	 */
+	public long bytes() {
+		PrimeSet current = prefix;
+		return current == null ? 0 : bytes(current.max());
+	}
+
+	/**
+	 * Returns the number of queries answered from the cached prefix without
+	 * waiting for any sieving.
+	 *
+	 * @return the number of cache hits
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of times the primes had to be sieved. Concurrent
+	 * queries that were coalesced only count once.
+	 *
+	 * @return the number of extensions sieved
+	 */
+	public long extensions() {
+		return extensions.sum();
+	}
+
+	/**
+	 * Removes the cached prefix. Any extension already being sieved may still
+	 * cache its result when it finishes.
+	 */
+	public synchronized void clear() {
+		prefix = null;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("frontier=%d, bytes=%d, hits=%d, extensions=%d",
+				frontier(), bytes(), hits(), extensions());
+	}
+}
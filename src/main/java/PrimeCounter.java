@@ -0,0 +1,259 @@
+import java.util.concurrent.CancellationException;
+
+/**
+ * Counts the primes less than or equal to a value without finding them, using
+ * the Lucy_Hedgehog variant of the Legendre/Meissel prime-counting method. Runs
+ * in about O(x<sup>3/4</sup>) time using O(x<sup>1/2</sup>) memory, so counting
+ * up to 10<sup>12</sup> only needs two arrays of a million longs.
+ *
+ * <p>The algorithm tracks {@code S(v)}, the number of values in {@code [2, v]}
+ * that are not a multiple of any prime less than the current prime, for every
+ * {@code v} of the form {@code x / i}. There are only about
+ * {@code 2 * sqrt(x)} such values, stored in two arrays: {@code small[v]} for
+ * {@code v <= sqrt(x)} and {@code large[i]} for {@code S(x / i)}. Each prime
+ * {@code p} removes the values whose smallest prime factor is {@code p}:
+ *
+ * <pre>
+ * S(v) -= S(v / p) - S(p - 1)    for every v &gt;= p * p
+ * </pre>
+ *
+ * <p>Most updates for each prime only read entries that are not updated for
+ * that prime, so those are split between worker threads.
+ *
+ * @see <a href="https://en.wikipedia.org/wiki/Prime-counting_function#Algorithms_for_evaluating_%CF%80(x)">
+ * Prime-Counting Function: Algorithms</a>
+ * @see <a href="https://projecteuler.net/thread=10;page=5#111677">Lucy_Hedgehog's
+ * Method</a>
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Summer 2021
+ */
+public class PrimeCounter {
+	/** Smallest number of updates worth splitting between worker threads. */
+	public static final int PARALLEL_THRESHOLD = 1 << 15;
+
+	/**
+	 * Largest value that can be counted. The quotients {@code x / (i * p)} are
+	 * computed with floating-point reciprocals and corrected by at most one,
+	 * which is only guaranteed while they stay well within the 53 bits of
+	 * precision of a double.
+	 */
+	public static final long MAX = 1L << 50;
+
+	/** Prevent instantiating this class of static methods. */
+	private PrimeCounter() {
+	}
+
+	/**
+	 * Returns the number of primes less than or equal to the value, using only
+	 * the current thread.
+	 *
+	 * @param x the value to count up to, at most {@link #MAX}
+	 * @return the number of primes up to and including x
+	 * @throws IllegalArgumentException if x is larger than {@link #MAX}
+	 */
+	public static long count(long x) {
+		checkRange(x);
+		return count(x, null, new CancellationToken());
+	}
+
+	/**
+	 * Checks the value can be counted before any work is started.
+	 *
+	 * @param x the value to count up to
+	 * @throws IllegalArgumentException if x is larger than {@link #MAX}
+	 */
+	private static void checkRange(long x) {
+		if (x > MAX) {
+			throw new IllegalArgumentException("Value must be at most " + MAX + ".");
+		}
+	}
+
+	/**
+	 * Returns the number of primes less than or equal to the value, using a work
+	 * queue for the larger steps. The number of threads must be a positive
+	 * number greater than or equal to 1.
+	 *
+	 * @param x the value to count up to, at most {@link #MAX}
+	 * @param threads number of worker threads (must be positive)
+	 * @return the number of primes up to and including x
+	 * @throws IllegalArgumentException if x is larger than {@link #MAX}
+	 * @throws CancellationException if interrupted while counting
+	 */
+	public static long count(long x, int threads) {
+		return count(x, threads, new CancellationToken());
+	}
+
+	/**
+	 * Returns the number of primes less than or equal to the value like
+	 * {@link #count(long, int)}, stopping early if the token is cancelled. The
+	 * token is checked once per prime up to the square root of the value, and
+	 * before each chunk of work given to the worker threads.
+	 *
+	 * @param x the value to count up to, at most {@link #MAX}
+	 * @param threads number of worker threads (must be positive)
+	 * @param token used to cancel this job
+	 * @return the number of primes up to and including x
+	 * @throws IllegalArgumentException if x is larger than {@link #MAX}
+	 * @throws CancellationException if the token was cancelled or the thread was
+	 *   interrupted while counting
+	 */
+	public static long count(long x, int threads, CancellationToken token) {
+		checkRange(x);
+		WorkQueue queue = new WorkQueue(threads);
+
+		try {
+			return count(x, queue, token);
+		}
+		finally {
+			queue.join();
+		}
+	}
+
+	/**
+	 * Returns the number of primes less than or equal to the value.
+	 *
+	 * @param x the value to count up to
+	 * @param queue the work queue to use for the larger steps, or null to use
+	 *   only the current thread
+	 * @param token used to cancel this job
+	 * @return the number of primes up to and including x
+	 * @throws CancellationException if the token was cancelled
+	 */
+	private static long count(long x, WorkQueue queue, CancellationToken token) {
+		if (x < 2) {
+			return 0;
+		}
+
+		// counts for small values never exceed the value, so they fit in an int
+		int root = PrimeSieve.sqrt(x);
+		int[] small = new int[root + 1];
+		long[] large = new long[root + 1];
+
+		// multiplying by a reciprocal is much faster than dividing
+		double[] inverse = new double[root + 1];
+
+		// start with every value in [2, v] as a candidate
+		for (int v = 1; v <= root; v++) {
+			small[v] = v - 1;
+			large[v] = x / v - 1;
+			inverse[v] = 1.0 / v;
+		}
+
+		for (int p = 2; p <= root; p++) {
+			// skip composites, which did not change the count of candidates
+			if (small[p] == small[p - 1]) {
+				continue;
+			}
+
+			token.check();
+			int before = small[p - 1];
+			long square = (long) p * p;
+			int limit = (int) Math.min(root, x / square);
+
+			// large[i * p] is still in the large array, and may be updated below
+			int head = Math.min(limit, root / p);
+
+			for (int i = 1; i <= head; i++) {
+				large[i] -= large[i * p] - before;
+			}
+
+			// the rest only read the small array, which is not updated until later
+			int prime = p;
+			long quotient = x / p;
+			double real = quotient;
+
+			run(queue, head + 1, limit, token, (start, end) -> {
+				for (int i = start; i <= end; i++) {
+					// x / (i * p) is quotient / i, off by at most 1 from rounding
+					long q = (long) (real * inverse[i]);
+					long r = quotient - q * i;
+					q += r < 0 ? -1 : r >= i ? 1 : 0;
+
+					large[i] -= small[(int) q] - before;
+				}
+			});
+
+			if (square > root) {
+				continue;
+			}
+
+			// values v / p = q share a block of p values, so no division is needed
+			int blocks = root / p;
+
+			// small[q] may be updated too when q >= p * p, so go from largest down
+			int first = (int) Math.min(square, blocks + 1L);
+
+			subtract(small, first, blocks, p, root, before);
+
+			// the rest only read values less than p * p, which are never updated
+			run(queue, p, first - 1, token, (start, end) -> subtract(small, start, end, prime, root, before));
+		}
+
+		return large[1];
+	}
+
+	/**
+	 * Applies the update {@code small[v] -= small[v / p] - before} for every
+	 * value v where {@code v / p} is in the range of quotients, working from the
+	 * largest quotient down.
+	 *
+	 * @param small the small array to update
+	 * @param start the smallest quotient
+	 * @param end the largest quotient (inclusive)
+	 * @param p the current prime
+	 * @param root the largest index of the small array
+	 * @param before the number of primes less than p
+	 */
+	private static void subtract(int[] small, int start, int end, int p, int root, int before) {
+		for (int q = end; q >= start; q--) {
+			int removed = small[q] - before;
+			int last = (int) Math.min(root, (long) q * p + p - 1);
+
+			for (int v = q * p; v <= last; v++) {
+				small[v] -= removed;
+			}
+		}
+	}
+
+	/**
+	 * Runs the task on the range, splitting it between worker threads if there
+	 * is a work queue and the range is large enough to be worth splitting.
+	 * Returns only after the entire range is done.
+	 *
+	 * @param queue the work queue to use, or null to use only the current thread
+	 * @param start the first value in the range
+	 * @param end the last value in the range (inclusive)
+	 * @param token checked before each chunk of the range
+	 * @param task the work to perform on the range
+	 * @throws CancellationException if cancelled or interrupted before the range
+	 *   was done
+	 */
+	private static void run(WorkQueue queue, int start, int end, CancellationToken token, WorkQueue.RangeTask task) {
+		if (start > end) {
+			return;
+		}
+
+		if (queue == null || end - start < PARALLEL_THRESHOLD) {
+			task.run(start, end);
+			return;
+		}
+
+		queue.executeRange(start, end, (first, last) -> {
+			token.check();
+			task.run(first, last);
+		});
+
+		queue.finish();
+
+		if (Thread.currentThread().isInterrupted()) {
+			// workers may still be updating the arrays, so the count is unusable
+			queue.shutdownNow();
+			throw new CancellationException("Interrupted while counting primes.");
+		}
+
+		// a cancelled chunk was skipped, so the count is incomplete
+		token.check();
+	}
+}
@@ -1,4 +1,15 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 /**
  * Finds primes, with an inefficient single-threaded implementation made somewhat
@@ -9,11 +20,43 @@ import java.util.TreeSet;
  * @version Summer 2021
  */
 public class PrimeFinder {
+	/**
+	 * The ways {@link #findPrimes(int, int, Engine)} may split the work between
+	 * worker threads.
+	 */
+	public enum Engine {
+		/** Splits the range into chunks of equal estimated cost on a work queue. */
+		WORK_QUEUE,
+
+		/**
+		 * Recursively splits the range in half by estimated cost on a fork/join
+		 * pool, merging the arrays of primes found by each half.
+		 */
+		FORK_JOIN
+	}
+
+	/**
+	 * The number of smallest tasks per worker thread the fork/join engine splits
+	 * the range into. Forking is cheap, so this is finer than the chunks used by
+	 * the work queue, which lets idle workers steal the smaller halves near the
+	 * end.
+	 */
+	public static final int SPLITS_PER_THREAD = 16;
+
+	/**
+	 * Largest upper value for which windows are counted with
+	 * {@link PrimeCounter} instead of sieved, which keeps its arrays below about
+	 * 50 MiB.
+	 */
+	public static final long COUNTER_LIMIT = 1L << 42;
+
 	/**
 	 * A terrible and naive approach to determining if a number is prime.
 	 *
 	 * @param number to test if prime
 	 * @return true if the number is prime
+	 *
+	 * @see Primality#isPrime(int)
 	 */
 	public static boolean isPrime(int number) {
 		if (number < 2) {
@@ -36,40 +79,652 @@ public class PrimeFinder {
 
 	/**
 	 * Returns a collection of all primes less than or equal to the max value.
+	 * Only tests the candidates on a mod-30 wheel, since every other value is a
+	 * multiple of 2, 3, or 5.
 	 *
 	 * @param max the maximum value to evaluate if prime
 	 * @return all prime numbers found up to and including max
+	 *
+	 * @see Wheel#forEachCandidate(int, int, java.util.function.IntConsumer)
 	 */
 	public static TreeSet<Integer> trialDivision(int max) {
 		TreeSet<Integer> primes = new TreeSet<Integer>();
 
 		if (max > 0) {
-			for (int i = 1; i <= max; i++) {
+			Wheel.forEachCandidate(1, max, i -> {
 				if (isPrime(i)) {
 					primes.add(i);
 				}
-			}
+			});
 		}
 
 		return primes;
 	}
 
+	/**
+	 * Returns a collection of all primes less than or equal to the max value
+	 * using a segmented sieve instead of trial division. Produces the same
+	 * results as {@link #trialDivision(int)} in a fraction of the time.
+	 *
+	 * @param max the maximum value to evaluate if prime
+	 * @return all prime numbers found up to and including max
+	 *
+	 * @see PrimeSieve#forEachPrime(int, java.util.function.IntConsumer)
+	 * @see PrimeSieve#stream(int)
+	 */
+	public static TreeSet<Integer> sieve(int max) {
+		TreeSet<Integer> primes = new TreeSet<Integer>();
+		PrimeSieve.forEachPrime(max, primes::add);
+		return primes;
+	}
+
 	/**
 	 * Uses a work queue to find all primes less than or equal to the maximum
 	 * value. The number of threads must be a positive number greater than or
 	 * equal to 1.
 	 *
+	 * <p>Testing a value takes time proportional to the value itself, so the
+	 * range is split into chunks of equal estimated cost rather than equal size.
+	 * Otherwise the last chunk would take far longer than the first, leaving the
+	 * other workers idle while it finishes.
+	 *
 	 * @param max the maximum value to evaluate if prime
 	 * @param threads number of worker threads (must be positive)
 	 * @return all prime numbers found up to and including max
+	 *
+	 * @see PrimeTask#work(int)
+	 * @see #findPrimes(int, int, Engine)
 	 */
 	public static TreeSet<Integer> findPrimes(int max, int threads) {
-		// TODO Fix this implementation (see trialDivision for starting point).
-		throw new UnsupportedOperationException("Not yet implemented.");
+		return findPrimes(max, threads, new CancellationToken());
+	}
+
+	/**
+	 * Uses a work queue to find all primes less than or equal to the maximum
+	 * value like {@link #findPrimes(int, int)}, stopping early if the token is
+	 * cancelled. Each task checks the token before testing each candidate.
+	 *
+	 * @param max the maximum value to evaluate if prime
+	 * @param threads number of worker threads (must be positive)
+	 * @param token used to cancel this job
+	 * @return all prime numbers found up to and including max
+	 * @throws CancellationException if the token was cancelled or the thread was
+	 *   interrupted
+	 */
+	public static TreeSet<Integer> findPrimes(int max, int threads, CancellationToken token) {
+		TreeSet<Integer> primes = new TreeSet<Integer>();
+		WorkQueue queue = new WorkQueue(threads);
+
+		try {
+			// merge the partial results once, instead of locking per prime
+			for (List<Integer> found : queue.invokeRange(1, max, new PrimeTask(token), PrimeTask::work)) {
+				primes.addAll(found);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while finding primes.");
+		}
+		catch (ExecutionException e) {
+			throw unwrap(e, "Unable to find primes.");
+		}
+		finally {
+			queue.join();
+		}
+
+		return primes;
+	}
+
+	/**
+	 * Finds all primes less than or equal to the maximum value using the engine
+	 * provided. Both engines return the same results, so the choice only affects
+	 * performance. The number of threads must be a positive number greater than
+	 * or equal to 1.
+	 *
+	 * @param max the maximum value to evaluate if prime
+	 * @param threads number of worker threads (must be positive)
+	 * @param engine how to split the work between worker threads
+	 * @return all prime numbers found up to and including max
+	 *
+	 * @see #findPrimes(int, int)
+	 */
+	public static TreeSet<Integer> findPrimes(int max, int threads, Engine engine) {
+		if (engine == Engine.WORK_QUEUE) {
+			return findPrimes(max, threads);
+		}
+
+		TreeSet<Integer> primes = new TreeSet<Integer>();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+
+		try {
+			double grain = PrimeTask.work(max) / ((double) threads * SPLITS_PER_THREAD);
+
+			for (int prime : pool.invoke(new SplitTask(1, max, grain))) {
+				primes.add(prime);
+			}
+		}
+		finally {
+			pool.shutdown();
+
+			try {
+				// wait so that no worker threads outlive this call
+				pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			}
+			catch (InterruptedException e) {
+				System.err.println("Warning: Interrupted while finding primes.");
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return primes;
+	}
+
+	/**
+	 * Uses a work queue to count the primes less than or equal to the maximum
+	 * value, without finding or storing them. Much faster than calling
+	 * {@code findPrimes(max, threads).size()}. The number of threads must be a
+	 * positive number greater than or equal to 1.
+	 *
+	 * @param max the maximum value to evaluate if prime
+	 * @param threads number of worker threads (must be positive)
+	 * @return the number of primes found up to and including max
+	 * @throws CancellationException if interrupted while counting
+	 *
+	 * @see PrimeCounter#count(long, int)
+	 */
+	public static int countPrimes(int max, int threads) {
+		return (int) PrimeCounter.count(max, threads);
+	}
+
+	/**
+	 * Uses a work queue to count the primes between the lower and upper values
+	 * (inclusive), which may be far larger than {@link Integer#MAX_VALUE}. Wide
+	 * windows are counted without sieving when that is faster, and otherwise
+	 * the segments of the window are split between the worker threads. Each
+	 * worker only needs memory for a single segment at a time.
+	 *
+	 * @param lo the smallest value to include
+	 * @param hi the largest value to include, up to {@link PrimeSieve#RANGE_MAX}
+	 * @param threads number of worker threads (must be positive)
+	 * @return the number of primes in the window
+	 * @throws IllegalArgumentException if hi is larger than
+	 *   {@link PrimeSieve#RANGE_MAX}
+	 *
+	 * @see PrimeSieve#count(long, long)
+	 */
+	public static long countPrimes(long lo, long hi, int threads) {
+		return countPrimes(lo, hi, threads, new CancellationToken());
+	}
+
+	/**
+	 * Uses a work queue to count the primes between the lower and upper values
+	 * (inclusive) like {@link #countPrimes(long, long, int)}, stopping early if
+	 * the token is cancelled. Sieved windows check the token before each
+	 * segment, while counted windows check it once per base prime.
+	 *
+	 * @param lo the smallest value to include
+	 * @param hi the largest value to include, up to {@link PrimeSieve#RANGE_MAX}
+	 * @param threads number of worker threads (must be positive)
+	 * @param token used to cancel this job
+	 * @return the number of primes in the window
+	 * @throws IllegalArgumentException if hi is larger than
+	 *   {@link PrimeSieve#RANGE_MAX}
+	 * @throws CancellationException if the token was cancelled or the thread was
+	 *   interrupted
+	 */
+	public static long countPrimes(long lo, long hi, int threads, CancellationToken token) {
+		int segments = PrimeSieve.segments(lo, hi);
+		token.check();
+
+		// counting takes about x^(3/4) steps, while sieving takes one per value
+		if (hi <= COUNTER_LIMIT && hi - Math.max(lo, 0) > Math.pow(hi, 0.75)) {
+			return PrimeCounter.count(hi, threads, token) - (lo < 2 ? 0 : PrimeCounter.count(lo - 1, threads, token));
+		}
+
+		int[] base = PrimeSieve.basePrimes(PrimeSieve.sqrt(Math.max(hi, 0)));
+		long count = lo <= 2 && hi >= 2 ? 1 : 0;
+		WorkQueue queue = new WorkQueue(threads);
+
+		try {
+			for (long found : queue.invokeRange(0, segments - 1, new CountTask(lo, hi, base, token))) {
+				count += found;
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while counting primes.");
+		}
+		catch (ExecutionException e) {
+			throw unwrap(e, "Unable to count primes.");
+		}
+		finally {
+			queue.join();
+		}
+
+		return count;
+	}
+
+	/**
+	 * Uses a work queue to sieve the primes between the lower and upper values
+	 * (inclusive), passing each one to the action in increasing order from the
+	 * calling thread. The workers sieve one segment each at a time, so memory
+	 * stays bounded by the number of threads rather than the size of the window.
+	 *
+	 * @param lo the smallest value to include
+	 * @param hi the largest value to include, up to {@link PrimeSieve#RANGE_MAX}
+	 * @param threads number of worker threads (must be positive)
+	 * @param action the action to perform on each prime
+	 * @throws IllegalArgumentException if hi is larger than
+	 *   {@link PrimeSieve#RANGE_MAX}, or threads is not positive
+	 *
+	 * @see PrimeSieve#stream(long, long)
+	 */
+	public static void forEachPrime(long lo, long hi, int threads, LongConsumer action) {
+		forEachPrime(lo, hi, threads, new CancellationToken(), action);
+	}
+
+	/**
+	 * Uses a work queue to sieve the primes between the lower and upper values
+	 * (inclusive) like {@link #forEachPrime(long, long, int, LongConsumer)},
+	 * stopping early if the token is cancelled. Each worker checks the token
+	 * before each segment, and the calling thread checks it before passing the
+	 * primes of each batch of segments to the action. A batch is only passed to
+	 * the action once every segment in it was sieved without an exception.
+	 *
+	 * @param lo the smallest value to include
+	 * @param hi the largest value to include, up to {@link PrimeSieve#RANGE_MAX}
+	 * @param threads number of worker threads (must be positive)
+	 * @param token used to cancel this job
+	 * @param action the action to perform on each prime
+	 * @throws IllegalArgumentException if hi is larger than
+	 *   {@link PrimeSieve#RANGE_MAX}, or threads is not positive
+	 * @throws CancellationException if the token was cancelled or the thread was
+	 *   interrupted
+	 */
+	public static void forEachPrime(long lo, long hi, int threads, CancellationToken token, LongConsumer action) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Must have at least one worker thread.");
+		}
+
+		int segments = PrimeSieve.segments(lo, hi);
+		int[] base = PrimeSieve.basePrimes(PrimeSieve.sqrt(Math.max(hi, 0)));
+		long[][] buffers = new long[threads][PrimeSieve.SEGMENT_SIZE >>> 6];
+
+		if (lo <= 2 && hi >= 2) {
+			action.accept(2);
+		}
+
+		WorkQueue queue = new WorkQueue(threads);
+
+		try {
+			for (int first = 0; first < segments; first += threads) {
+				int batch = Math.min(threads, segments - first);
+				int offset = first;
+
+				// each segment in the batch is sieved into its own buffer, and any
+				// failure is rethrown before the partly sieved buffers are used
+				queue.invokeRange(first, first + batch - 1, (start, end) -> {
+					for (int segment = start; segment <= end; segment++) {
+						token.check();
+						sieve(buffers[segment - offset], lo, hi, segment, base);
+					}
+
+					return null;
+				});
+
+				token.check();
+
+				for (int i = 0; i < batch; i++) {
+					int segment = first + i;
+					PrimeSieve.forEachUnmarkedLong(buffers[i], PrimeSieve.segmentLow(lo, segment),
+							PrimeSieve.segmentLength(lo, hi, segment), action);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while finding primes.");
+		}
+		catch (ExecutionException e) {
+			throw unwrap(e, "Unable to find primes.");
+		}
+		finally {
+			queue.join();
+		}
+	}
+
+	/**
+	 * Uses a work queue to find the primes between the lower and upper values
+	 * (inclusive).
+	 *
+	 * @param lo the smallest value to include
+	 * @param hi the largest value to include, up to {@link PrimeSieve#RANGE_MAX}
+	 * @param threads number of worker threads (must be positive)
+	 * @return sorted array of primes in the window
+	 * @throws IllegalArgumentException if hi is larger than
+	 *   {@link PrimeSieve#RANGE_MAX}
+	 *
+	 * @see #forEachPrime(long, long, int, LongConsumer)
+	 */
+	public static long[] findPrimes(long lo, long hi, int threads) {
+		LongStream.Builder primes = LongStream.builder();
+		forEachPrime(lo, hi, threads, primes::add);
+		return primes.build().toArray();
+	}
+
+	/**
+	 * Returns the exception to throw for a work request that failed. Cancelled
+	 * work is rethrown as is, so callers can tell it apart from other failures.
+	 *
+	 * @param e the exception thrown while waiting for the work request
+	 * @param message the message to use if the work request was not cancelled
+	 * @return the exception to throw
+	 */
+	private static RuntimeException unwrap(ExecutionException e, String message) {
+		if (e.getCause() instanceof CancellationException) {
+			return (CancellationException) e.getCause();
+		}
+
+		return new IllegalStateException(message, e.getCause());
+	}
+
+	/**
+	 * Sieves a single segment of a window into a buffer, clearing it first.
+	 *
+	 * @param bits the buffer with room for one segment
+	 * @param lo the smallest value in the window
+	 * @param hi the largest value in the window
+	 * @param segment the index of the segment within the window
+	 * @param base the base primes up to the square root of hi
+	 * @return the number of odd values represented by the segment
+	 */
+	private static int sieve(long[] bits, long lo, long hi, int segment, int[] base) {
+		int length = PrimeSieve.segmentLength(lo, hi, segment);
+
+		Arrays.fill(bits, 0, (length + 63) >>> 6, 0L);
+		PrimeSieve.sieveSegment(bits, 0, PrimeSieve.segmentLow(lo, segment), length, base);
+		return length;
+	}
+
+	/**
+	 * Uses a work queue to sieve all primes less than or equal to the maximum
+	 * value. The number of threads must be a positive number greater than or
+	 * equal to 1.
+	 *
+	 * @param max the maximum value to evaluate if prime
+	 * @param threads number of worker threads (must be positive)
+	 * @return all prime numbers found up to and including max
+	 *
+	 * @see #primeSet(int, int)
+	 */
+	public static TreeSet<Integer> parallelSieve(int max, int threads) {
+		return new TreeSet<Integer>(primeSet(max, threads).asSet());
+	}
+
+	/**
+	 * Uses a work queue to sieve all primes less than or equal to the maximum
+	 * value into a compact bitset. The base primes up to the square root of the
+	 * maximum are computed once and shared (read-only) by every task. Each task
+	 * sieves one contiguous segment into its own word-aligned region of the
+	 * bitset, so no locking is needed.
+	 *
+	 * @param max the maximum value to evaluate if prime
+	 * @param threads number of worker threads (must be positive)
+	 * @return all prime numbers found up to and including max
+	 * @throws CancellationException if interrupted before every segment was
+	 *   sieved
+	 *
+	 * @see PrimeSieve#sieveInto(long[], int, int, int[])
+	 */
+	public static PrimeSet primeSet(int max, int threads) {
+		return extend(null, max, threads);
+	}
+
+	/**
+	 * Uses a work queue to extend a prime set up to a larger maximum value. Only
+	 * the segments past the last complete segment of the prefix are sieved; the
+	 * rest of the bitset is copied from the prefix, which is not modified. The
+	 * number of threads must be a positive number greater than or equal to 1.
+	 *
+	 * @param prefix the primes already found, or null if none
+	 * @param max the maximum value to evaluate if prime
+	 * @param threads number of worker threads (must be positive)
+	 * @return all prime numbers found up to and including max
+	 * @throws CancellationException if interrupted before every segment was
+	 *   sieved
+	 *
+	 * @see #primeSet(int, int)
+	 */
+	public static PrimeSet extend(PrimeSet prefix, int max, int threads) {
+		if (prefix != null && prefix.max() >= max) {
+			return prefix.range(0, max);
+		}
+
+		long[] bits = new long[PrimeSet.words(max)];
+		int[] base = PrimeSieve.basePrimes(PrimeSieve.sqrt(Math.max(max, 0)));
+		int first = 0;
+
+		if (prefix != null && PrimeSieve.segments(prefix.max()) > 1) {
+			// the last segment of the prefix may be partial, so sieve it again
+			first = PrimeSieve.segments(prefix.max()) - 1;
+			prefix.bits().get(bits, 0, first * (PrimeSieve.SEGMENT_SIZE >>> 6));
+		}
+
+		WorkQueue queue = new WorkQueue(threads);
+
+		for (int i = first; i < PrimeSieve.segments(max); i++) {
+			queue.execute(new SegmentTask(i, max, base, bits));
+		}
+
+		// join() makes the writes from every task visible to this thread
+		queue.join();
+
+		if (Thread.currentThread().isInterrupted()) {
+			// some tasks may still be writing, so never publish the bits
+			queue.shutdownNow();
+			throw new CancellationException("Interrupted while finding primes.");
+		}
+
+		return new PrimeSet(bits, max);
+	}
+
+	/**
+	 * Tests whether each number in a chunk of the range is prime, returning the
+	 * primes found in that chunk.
+	 */
+	private static class PrimeTask implements WorkQueue.RangeCallable<List<Integer>> {
+		/** Used to cancel the job this task belongs to. */
+		private final CancellationToken token;
+
+		/**
+		 * Initializes this task.
+		 *
+		 * @param token used to cancel the job this task belongs to
+		 */
+		public PrimeTask(CancellationToken token) {
+			this.token = token;
+		}
+
+		/**
+		 * Estimates the total cost of testing every value up to the given value.
+		 * Testing a value may try almost every smaller divisor (and even the
+		 * composites try about half), so the total grows with the square of the
+		 * value. The wheel skips the same fraction of every range, so it does not
+		 * change how the cost is split.
+		 *
+		 * @param value the last value tested
+		 * @return the estimated cost of testing every value up to it
+		 */
+		public static double work(int value) {
+			return (double) value * value;
+		}
+
+		@Override
+		public List<Integer> call(int start, int end) {
+			ArrayList<Integer> found = new ArrayList<Integer>();
+
+			// the values skipped by the wheel are multiples of 2, 3, or 5
+			Wheel.forEachCandidate(start, end, i -> {
+				token.check();
+
+				if (isPrime(i)) {
+					found.add(i);
+				}
+			});
+
+			return found;
+		}
+	}
+
+	/**
+	 * Finds the primes in a range, splitting the range in half by estimated cost
+	 * until each half is small enough to test directly. The halves return sorted
+	 * arrays that are concatenated in order, so no locking is needed.
+	 */
+	private static class SplitTask extends RecursiveTask<int[]> {
+		/** Unused serial version identifier. */
+		private static final long serialVersionUID = 1L;
+
+		/** The first value in the range. */
+		private final int start;
+
+		/** The last value in the range (inclusive). */
+		private final int end;
+
+		/** The estimated cost below which the range is not split any further. */
+		private final double grain;
+
+		/**
+		 * Initializes this task.
+		 *
+		 * @param start the first value in the range
+		 * @param end the last value in the range (inclusive)
+		 * @param grain the estimated cost below which the range is not split
+		 */
+		public SplitTask(int start, int end, double grain) {
+			this.start = start;
+			this.end = end;
+			this.grain = grain;
+		}
+
+		@Override
+		protected int[] compute() {
+			double before = PrimeTask.work(start - 1);
+			double cost = PrimeTask.work(end) - before;
+
+			if (start >= end || cost <= grain) {
+				IntStream.Builder found = IntStream.builder();
+
+				Wheel.forEachCandidate(start, end, i -> {
+					if (isPrime(i)) {
+						found.add(i);
+					}
+				});
+
+				return found.build().toArray();
+			}
+
+			// the cost grows with the square, so this value splits it in half
+			int middle = (int) Math.sqrt(before + cost / 2);
+			middle = Math.max(start, Math.min(end - 1, middle));
+
+			SplitTask left = new SplitTask(start, middle, grain);
+			SplitTask right = new SplitTask(middle + 1, end, grain);
+
+			left.fork();
+			int[] upper = right.compute();
+			int[] lower = left.join();
+
+			int[] merged = Arrays.copyOf(lower, lower.length + upper.length);
+			System.arraycopy(upper, 0, merged, lower.length, upper.length);
+			return merged;
+		}
+	}
+
+	/**
+	 * Counts the primes in a chunk of the segments of a window, reusing a single
+	 * buffer for every segment in the chunk.
+	 */
+	private static class CountTask implements WorkQueue.RangeCallable<Long> {
+		/** The smallest value in the window. */
+		private final long lo;
+
+		/** The largest value in the window. */
+		private final long hi;
+
+		/** The shared base primes. */
+		private final int[] base;
+
+		/** Used to cancel the job this task belongs to. */
+		private final CancellationToken token;
+
+		/**
+		 * Initializes this task.
+		 *
+		 * @param lo the smallest value in the window
+		 * @param hi the largest value in the window
+		 * @param base the shared base primes
+		 * @param token used to cancel the job this task belongs to
+		 */
+		public CountTask(long lo, long hi, int[] base, CancellationToken token) {
+			this.lo = lo;
+			this.hi = hi;
+			this.base = base;
+			this.token = token;
+		}
+
+		@Override
+		public Long call(int start, int end) {
+			long[] bits = new long[PrimeSieve.SEGMENT_SIZE >>> 6];
+			long count = 0;
+
+			for (int segment = start; segment <= end; segment++) {
+				token.check();
+				int length = sieve(bits, lo, hi, segment, base);
+				count += PrimeSieve.countUnmarked(bits, length);
+			}
+
+			return count;
+		}
+	}
+
+	/**
+	 * Sieves a single segment into its region of the shared bitset.
+	 */
+	private static class SegmentTask implements Runnable {
+		/** The index of the segment to sieve. */
+		private final int index;
+
+		/** The maximum value to evaluate if prime. */
+		private final int max;
+
+		/** The shared base primes. */
+		private final int[] base;
+
+		/** The shared odd-only bitset of primes. */
+		private final long[] bits;
+
+		/**
+		 * Initializes this task.
+		 *
+		 * @param index the index of the segment to sieve
+		 * @param max the maximum value to evaluate if prime
+		 * @param base the shared base primes
+		 * @param bits the shared odd-only bitset of primes
+		 */
+		public SegmentTask(int index, int max, int[] base, long[] bits) {
+			this.index = index;
+			this.max = max;
+			this.base = base;
+			this.bits = bits;
+		}
+
+		@Override
+		public void run() {
+			PrimeSieve.sieveInto(bits, index, max, base);
+		}
 	}
 
-	// TODO Add additional classes or methods as needed.
-	
 	/**
 	 * Demonstrates this class.
 	 *
@@ -83,6 +738,7 @@ public class PrimeFinder {
 		System.out.println("Comparing prime numbers:");
 		System.out.println(trialDivision(max));
 		System.out.println(findPrimes(max, threads));
+		System.out.println(parallelSieve(max, threads));
 		System.out.println();
 	}
 }
@@ -0,0 +1,429 @@
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * A compact, immutable set of primes backed by an odd-only bitset, where bit
+ * {@code i} is set if the odd value {@code 2i + 1} is prime. Uses roughly one
+ * bit per odd value instead of the 40+ bytes per prime needed by a
+ * {@link java.util.TreeSet} of boxed integers. Also keeps a small directory of
+ * running counts so that {@link #count()} and {@link #nth(int)} do not need to
+ * scan the entire bitset.
+ *
+ * <p>Range views created by {@link #range(int, int)} share the same bitset. The
+ * bitset may live on the heap or in a memory-mapped file opened by
+ * {@link PrimeTable#open(java.nio.file.Path)}.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Summer 2021
+ */
+public class PrimeSet implements Iterable<Integer> {
+	/** Number of words covered by each entry in the directory of counts. */
+	private static final int BLOCK = 16;
+
+	/** The odd-only bitset of primes, shared by all range views. */
+	private final LongBuffer bits;
+
+	/** Number of odd primes before each block of words, shared by all views. */
+	private final IntBuffer ranks;
+
+	/** The maximum value evaluated when building the bitset. */
+	private final int max;
+
+	/** The smallest value included in this view. */
+	private final int lower;
+
+	/** The largest value included in this view. */
+	private final int upper;
+
+	/**
+	 * Initializes a prime set from an odd-only bitset.
+	 *
+	 * @param bits the odd-only bitset of primes
+	 * @param max the maximum value evaluated when building the bitset
+	 *
+	 * @see #words(int)
+	 */
+	public PrimeSet(long[] bits, int max) {
+		this(LongBuffer.wrap(bits), IntBuffer.wrap(ranks(bits)), max);
+	}
+
+	/**
+	 * Initializes a prime set from an odd-only bitset and its directory of
+	 * counts, such as those read from a file. Neither buffer is copied.
+	 *
+	 * @param bits the odd-only bitset of primes
+	 * @param ranks the directory of counts for the bitset
+	 * @param max the maximum value evaluated when building the bitset
+	 *
+	 * @see #ranks(long[])
+	 */
+	public PrimeSet(LongBuffer bits, IntBuffer ranks, int max) {
+		if (bits.limit() != words(max) || ranks.limit() != blocks(bits.limit())) {
+			throw new IllegalArgumentException("Bitset does not match max value " + max + ".");
+		}
+
+		this.bits = bits;
+		this.ranks = ranks;
+		this.max = max;
+		this.lower = 0;
+		this.upper = Math.max(max, 0);
+	}
+
+	/**
+	 * Initializes a range view of another prime set.
+	 *
+	 * @param other the prime set to view
+	 * @param lower the smallest value included in this view
+	 * @param upper the largest value included in this view
+	 */
+	private PrimeSet(PrimeSet other, int lower, int upper) {
+		this.bits = other.bits;
+		this.ranks = other.ranks;
+		this.max = other.max;
+		this.lower = lower;
+		this.upper = upper;
+	}
+
+	/**
+	 * Returns the number of entries in the directory of counts for a bitset.
+	 *
+	 * @param words the number of words in the bitset
+	 * @return the number of entries needed
+	 */
+	public static int blocks(int words) {
+		return (words + BLOCK - 1) / BLOCK + 1;
+	}
+
+	/**
+	 * Builds the directory of counts for a bitset, where entry {@code b} is the
+	 * number of odd primes before the {@code b}th block of words.
+	 *
+	 * @param bits the odd-only bitset of primes
+	 * @return the directory of counts
+	 */
+	public static int[] ranks(long[] bits) {
+		int[] ranks = new int[blocks(bits.length)];
+
+		for (int w = 0; w < bits.length; w++) {
+			if (w % BLOCK == 0) {
+				ranks[w / BLOCK + 1] = ranks[w / BLOCK];
+			}
+
+			ranks[w / BLOCK + 1] += Long.bitCount(bits[w]);
+		}
+
+		return ranks;
+	}
+
+	/**
+	 * Returns a read-only view of the odd-only bitset of primes, shared by all
+	 * range views of this set.
+	 *
+	 * @return the bitset of primes
+	 */
+	public LongBuffer bits() {
+		return bits.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns a read-only view of the directory of counts for the bitset.
+	 *
+	 * @return the directory of counts
+	 */
+	public IntBuffer ranks() {
+		return ranks.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns the number of words needed for an odd-only bitset that covers all
+	 * values up to and including the max value.
+	 *
+	 * @param max the maximum value to cover
+	 * @return the number of words needed
+	 */
+	public static int words(int max) {
+		return max < 1 ? 0 : (((max - 1) >>> 1) >>> 6) + 1;
+	}
+
+	/**
+	 * Returns the maximum value evaluated when building this set. Values larger
+	 * than this are never included, even if prime.
+	 *
+	 * @return the maximum value evaluated
+	 */
+	public int max() {
+		return max;
+	}
+
+	/**
+	 * Returns whether the value is a prime included in this set.
+	 *
+	 * @param value the value to test
+	 * @return true if the value is a prime within this set
+	 */
+	public boolean contains(int value) {
+		if (value < lower || value > upper || value < 2) {
+			return false;
+		}
+
+		if ((value & 1) == 0) {
+			return value == 2;
+		}
+
+		int index = value >>> 1;
+		return (bits.get(index >>> 6) & (1L << index)) != 0;
+	}
+
+	/**
+	 * Returns the number of primes less than or equal to the value within the
+	 * entire bitset, ignoring the bounds of this view.
+	 *
+	 * @param value the value to count up to
+	 * @return the number of primes less than or equal to the value
+	 */
+	private int rank(int value) {
+		if (value > max) {
+			value = max;
+		}
+
+		if (value < 2) {
+			return 0;
+		}
+
+		// count 2 and then the odd primes up to and including this bit
+		int index = (value - 1) >>> 1;
+		int word = index >>> 6;
+		int count = 1 + ranks.get(word / BLOCK);
+
+		for (int w = word / BLOCK * BLOCK; w < word; w++) {
+			count += Long.bitCount(bits.get(w));
+		}
+
+		return count + Long.bitCount(bits.get(word) & (-1L >>> (63 - (index & 63))));
+	}
+
+	/**
+	 * Returns the number of primes in this set.
+	 *
+	 * @return the number of primes
+	 */
+	public int count() {
+		return lower > upper ? 0 : rank(upper) - rank(lower - 1);
+	}
+
+	/**
+	 * Returns whether this set has no primes.
+	 *
+	 * @return true if there are no primes in this set
+	 */
+	public boolean isEmpty() {
+		return ceiling(lower) < 0;
+	}
+
+	/**
+	 * Returns the nth smallest prime in this set, starting from 0.
+	 *
+	 * @param n the index of the prime to return
+	 * @return the nth smallest prime
+	 * @throws IndexOutOfBoundsException if n is negative or not less than
+	 *   {@link #count()}
+	 */
+	public int nth(int n) {
+		if (n < 0 || n >= count()) {
+			throw new IndexOutOfBoundsException("Index " + n + " out of bounds for " + count() + " primes.");
+		}
+
+		int target = rank(lower - 1) + n;
+
+		if (target == 0) {
+			return 2;
+		}
+
+		// find the last block whose running count is not past the target
+		target--;
+		int low = 0;
+		int high = ranks.limit() - 2;
+
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+
+			if (ranks.get(middle) <= target) {
+				low = middle;
+			}
+			else {
+				high = middle - 1;
+			}
+		}
+
+		int w = low * BLOCK;
+		target -= ranks.get(low);
+
+		while (Long.bitCount(bits.get(w)) <= target) {
+			target -= Long.bitCount(bits.get(w));
+			w++;
+		}
+
+		long word = bits.get(w);
+
+		for (int i = 0; i < target; i++) {
+			word &= word - 1;
+		}
+
+		return (w << 7) + (Long.numberOfTrailingZeros(word) << 1) + 1;
+	}
+
+	/**
+	 * Returns the smallest prime in this set greater than or equal to the value,
+	 * or -1 if there is no such prime.
+	 *
+	 * @param value the value to start from
+	 * @return the smallest prime greater than or equal to the value, or -1
+	 */
+	public int ceiling(int value) {
+		if (value < lower) {
+			value = lower;
+		}
+
+		if (value > upper) {
+			return -1;
+		}
+
+		if (value <= 2) {
+			return upper >= 2 ? 2 : -1;
+		}
+
+		// index of the first odd value greater than or equal to value
+		int index = value >>> 1;
+		int last = (upper - 1) >>> 1;
+
+		if (index > last) {
+			return -1;
+		}
+
+		int w = index >>> 6;
+		long word = bits.get(w) & (-1L << index);
+
+		while (true) {
+			if (word != 0) {
+				int found = (w << 6) + Long.numberOfTrailingZeros(word);
+				return found > last ? -1 : (found << 1) + 1;
+			}
+
+			if (++w > last >>> 6) {
+				return -1;
+			}
+
+			word = bits.get(w);
+		}
+	}
+
+	/**
+	 * Returns a view of the primes in this set between the lower and upper
+	 * values (inclusive). The view shares the bitset of this set.
+	 *
+	 * @param lo the smallest value to include
+	 * @param hi the largest value to include
+	 * @return a view of the primes in the range
+	 */
+	public PrimeSet range(int lo, int hi) {
+		return new PrimeSet(this, Math.max(lo, lower), Math.min(hi, upper));
+	}
+
+	/**
+	 * Performs the action on each prime in this set in increasing order, without
+	 * boxing.
+	 *
+	 * @param action the action to perform on each prime
+	 */
+	public void forEachInt(IntConsumer action) {
+		PrimitiveIterator.OfInt iterator = iterator();
+
+		while (iterator.hasNext()) {
+			action.accept(iterator.nextInt());
+		}
+	}
+
+	/**
+	 * Returns the primes in this set as a sorted array.
+	 *
+	 * @return sorted array of primes
+	 */
+	public int[] toArray() {
+		int[] primes = new int[count()];
+		PrimitiveIterator.OfInt iterator = iterator();
+
+		for (int i = 0; i < primes.length; i++) {
+			primes[i] = iterator.nextInt();
+		}
+
+		return primes;
+	}
+
+	/**
+	 * Returns an iterator over the primes in this set in increasing order. Use
+	 * {@link PrimitiveIterator.OfInt#nextInt()} to avoid boxing.
+	 *
+	 * @return iterator over the primes
+	 */
+	@Override
+	public PrimitiveIterator.OfInt iterator() {
+		return new PrimitiveIterator.OfInt() {
+			/** The next prime to return, or -1 if there are no more. */
+			private int next = ceiling(lower);
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public int nextInt() {
+				if (next < 0) {
+					throw new NoSuchElementException();
+				}
+
+				int current = next;
+				next = current < upper ? ceiling(current + 1) : -1;
+				return current;
+			}
+		};
+	}
+
+	/**
+	 * Returns an unmodifiable {@link Set} view of this prime set for code that
+	 * expects a collection of boxed integers, such as the results of
+	 * {@link PrimeFinder#trialDivision(int)}.
+	 *
+	 * @return set view of the primes
+	 */
+	public Set<Integer> asSet() {
+		return new AbstractSet<Integer>() {
+			@Override
+			public boolean contains(Object o) {
+				return o instanceof Integer && PrimeSet.this.contains((Integer) o);
+			}
+
+			@Override
+			public Iterator<Integer> iterator() {
+				return PrimeSet.this.iterator();
+			}
+
+			@Override
+			public int size() {
+				return count();
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return asSet().toString();
+	}
+}
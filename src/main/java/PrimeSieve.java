@@ -0,0 +1,829 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Finds primes using a segmented Sieve of Eratosthenes. Only odd values are
+ * stored, one bit per value, and the range is processed one segment at a time
+ * so the working memory stays small enough to fit in the processor cache no
+ * matter how large the maximum value is.
+ *
+ * @see <a href="https://en.wikipedia.org/wiki/Sieve_of_Eratosthenes#Segmented_sieve">
+ * Sieve of Eratosthenes: Segmented Sieve</a>
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Summer 2021
+ */
+public class PrimeSieve {
+	/**
+	 * Number of odd values covered by a single segment. At one bit per value,
+	 * this is 32 KiB of working memory, which fits in most L1 or L2 caches.
+	 */
+	public static final int SEGMENT_SIZE = 1 << 18;
+
+	/**
+	 * Largest value supported by the range methods, which is the largest value
+	 * whose base primes (up to its square root) may be found with
+	 * {@link #basePrimes(int)}. Near this value the base primes alone take
+	 * about 400 MiB, so windows that high need a correspondingly large heap.
+	 */
+	public static final long RANGE_MAX = (long) Integer.MAX_VALUE * Integer.MAX_VALUE;
+
+	/**
+	 * Number of odd values before the marks for the multiples of 3, 5, and 7
+	 * repeat, which is a multiple of 64 so the pattern is a whole number of
+	 * words.
+	 */
+	private static final int PATTERN_SIZE = 3 * 5 * 7 * 64;
+
+	/**
+	 * Marks for the odd multiples of 3, 5, and 7 (including the primes
+	 * themselves), where bit {@code i} represents the odd value {@code 2i + 1}.
+	 * Copied into each segment instead of crossing off the smallest primes one
+	 * multiple at a time.
+	 */
+	private static final long[] PATTERN = new long[PATTERN_SIZE >>> 6];
+
+	/**
+	 * Largest limit {@link #basePrimes(int)} sieves with a simple sieve, which
+	 * needs one byte per odd value (256 KiB at this limit). Larger limits are
+	 * sieved one segment at a time instead.
+	 */
+	private static final int SIMPLE_LIMIT = 2 * SEGMENT_SIZE;
+
+	static {
+		for (int i = 0; i < PATTERN_SIZE; i++) {
+			int value = 2 * i + 1;
+
+			if (value % 3 == 0 || value % 5 == 0 || value % 7 == 0) {
+				PATTERN[i >>> 6] |= 1L << i;
+			}
+		}
+	}
+
+	/** Prevent instantiating this class of static methods. */
+	private PrimeSieve() {
+	}
+
+	/**
+	 * Returns the largest integer whose square is less than or equal to the
+	 * value provided.
+	 *
+	 * @param value the non-negative value
+	 * @return the integer square root of the value
+	 */
+	public static int sqrt(long value) {
+		long root = (long) Math.sqrt(value);
+
+		// correct for any floating-point rounding errors
+		while (root * root > value) {
+			root--;
+		}
+
+		while ((root + 1) * (root + 1) <= value) {
+			root++;
+		}
+
+		return (int) root;
+	}
+
+	/**
+	 * Returns all of the primes less than or equal to the limit, such as the base
+	 * primes needed to sieve each segment. Small limits use a simple sieve.
+	 * Larger limits are sieved one segment at a time by
+	 * {@link #forEachPrime(int, IntConsumer)}, so the only large allocation is
+	 * the array of primes returned.
+	 *
+	 * @param limit the maximum value to evaluate if prime
+	 * @return sorted array of primes up to and including the limit
+	 */
+	public static int[] basePrimes(int limit) {
+		if (limit < 2) {
+			return new int[0];
+		}
+
+		if (limit > SIMPLE_LIMIT) {
+			// the base primes of this sieve are below SIMPLE_LIMIT, so this recurses once
+			IntStream.Builder primes = IntStream.builder();
+			forEachPrime(limit, primes::add);
+			return primes.build().toArray();
+		}
+
+		// composite[i] represents the odd value 2i + 1
+		boolean[] composite = new boolean[limit / 2 + 1];
+
+		// upper bound on the number of primes up to the limit (Rosser and Schoenfeld)
+		int[] primes = new int[(int) Math.min(limit / 2 + 1, 1.25506 * limit / Math.log(limit) + 2)];
+		int count = 0;
+
+		primes[count++] = 2;
+
+		for (int i = 1; i <= (limit - 1) / 2; i++) {
+			if (!composite[i]) {
+				int prime = 2 * i + 1;
+				primes[count++] = prime;
+
+				for (long j = (long) prime * prime / 2; j < composite.length; j += prime) {
+					composite[(int) j] = true;
+				}
+			}
+		}
+
+		return Arrays.copyOf(primes, count);
+	}
+
+	/**
+	 * Returns the number of segments needed to cover the odd values up to and
+	 * including the max value. Segment {@code s} covers the odd values starting
+	 * at {@link #segmentLow(int)} so that every segment starts on a word boundary
+	 * of an odd-only bitset.
+	 *
+	 * @param max the maximum value to evaluate if prime
+	 * @return the number of segments needed
+	 */
+	public static int segments(int max) {
+		if (max < 3) {
+			return 0;
+		}
+
+		long odds = (max - 1L) / 2 + 1;
+		return (int) ((odds + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+	}
+
+	/**
+	 * Returns the first (odd) value represented by a segment.
+	 *
+	 * @param segment the index of the segment
+	 * @return the first value in the segment
+	 */
+	public static long segmentLow(int segment) {
+		return 2L * segment * SEGMENT_SIZE + 1;
+	}
+
+	/**
+	 * Returns the number of odd values represented by a segment, which is only
+	 * less than {@link #SEGMENT_SIZE} for the last segment.
+	 *
+	 * @param segment the index of the segment
+	 * @param max the maximum value to evaluate if prime
+	 * @return the number of odd values in the segment
+	 */
+	public static int segmentLength(int segment, int max) {
+		return (int) Math.min(SEGMENT_SIZE, (max - segmentLow(segment)) / 2 + 1);
+	}
+
+	/**
+	 * Returns the number of segments needed to cover the odd values in a window
+	 * of values from lo to hi (inclusive). Segment {@code s} of the window covers
+	 * the odd values starting at {@link #segmentLow(long, int)}.
+	 *
+	 * @param lo the smallest value in the window
+	 * @param hi the largest value in the window, up to {@link #RANGE_MAX}
+	 * @return the number of segments needed
+	 * @throws IllegalArgumentException if hi is larger than {@link #RANGE_MAX},
+	 *   or the window needs more than {@link Integer#MAX_VALUE} segments
+	 */
+	public static int segments(long lo, long hi) {
+		if (hi > RANGE_MAX) {
+			throw new IllegalArgumentException("Range must end at or before " + RANGE_MAX + ".");
+		}
+
+		long first = segmentLow(lo, 0);
+
+		if (first > hi) {
+			return 0;
+		}
+
+		long segments = (hi - first) / 2 / SEGMENT_SIZE + 1;
+
+		if (segments > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Range must span fewer than " + Integer.MAX_VALUE + " segments.");
+		}
+
+		return (int) segments;
+	}
+
+	/**
+	 * Returns the first (odd) value represented by a segment of a window.
+	 *
+	 * @param lo the smallest value in the window
+	 * @param segment the index of the segment within the window
+	 * @return the first value in the segment
+	 */
+	public static long segmentLow(long lo, int segment) {
+		return (Math.max(lo, 1) | 1) + 2L * segment * SEGMENT_SIZE;
+	}
+
+	/**
+	 * Returns the number of odd values represented by a segment of a window,
+	 * which is only less than {@link #SEGMENT_SIZE} for the last segment.
+	 *
+	 * @param lo the smallest value in the window
+	 * @param hi the largest value in the window
+	 * @param segment the index of the segment within the window
+	 * @return the number of odd values in the segment
+	 */
+	public static int segmentLength(long lo, long hi, int segment) {
+		return (int) Math.min(SEGMENT_SIZE, (hi - segmentLow(lo, segment)) / 2 + 1);
+	}
+
+	/**
+	 * Marks the odd composite values in a single segment. Bit {@code offset + i}
+	 * of the bits represents the odd value {@code low + 2i}, and will be set if
+	 * that value is a multiple of one of the odd base primes (or is 1). The bits
+	 * must be cleared before calling this method.
+	 *
+	 * @param bits the bits to mark
+	 * @param offset the bit representing the first value in the segment
+	 * @param low the first (odd) value represented by the segment
+	 * @param length the number of odd values represented by the segment
+	 * @param primes the base primes up to at least the square root of the last
+	 *   value in the segment
+	 */
+	public static void sieveSegment(long[] bits, long offset, long low, int length, int[] primes) {
+		long high = low + 2L * (length - 1);
+
+		presieve(bits, offset, low, length);
+
+		// 1 is not prime, but is not a multiple of any prime either
+		if (low == 1) {
+			bits[(int) (offset >>> 6)] |= 1L << offset;
+		}
+
+		// distance between the bits of consecutive multiples on the wheel, where
+		// the gaps between spokes are even so the multiples are always odd
+		long[] steps = new long[Wheel.SPOKES];
+
+		for (int prime : primes) {
+			// multiples of 2, 3, 5, and 7 were already marked by the pattern
+			if (prime <= 7) {
+				continue;
+			}
+
+			long square = (long) prime * prime;
+
+			if (square > high) {
+				break;
+			}
+
+			// only multiples prime * k with k on the wheel need to be marked, since
+			// any other k is a multiple of 2, 3, or 5 and was already marked
+			long k = Wheel.next(Math.max(prime, (low + prime - 1) / prime));
+			int spoke = Wheel.spoke(k);
+
+			long i = offset + (prime * k - low) / 2;
+
+			if (prime < length) {
+				// small primes mark many bits, so look up the distances between them
+				for (int s = 0; s < Wheel.SPOKES; s++) {
+					steps[s] = (long) prime * (Wheel.gap(s) >>> 1);
+				}
+
+				for (; i < offset + length; spoke = (spoke + 1) & 7) {
+					bits[(int) (i >>> 6)] |= 1L << i;
+					i += steps[spoke];
+				}
+			}
+			else {
+				// large primes only mark a few bits, if any
+				for (; i < offset + length; spoke = (spoke + 1) & 7) {
+					bits[(int) (i >>> 6)] |= 1L << i;
+					i += (long) prime * (Wheel.gap(spoke) >>> 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Marks the odd multiples of 3, 5, and 7 in a single segment by copying the
+	 * repeating {@link #PATTERN}, then unmarks the primes 3, 5, and 7 themselves.
+	 *
+	 * @param bits the bits to mark
+	 * @param offset the bit representing the first value in the segment
+	 * @param low the first (odd) value represented by the segment
+	 * @param length the number of odd values represented by the segment
+	 */
+	private static void presieve(long[] bits, long offset, long low, int length) {
+		long end = offset + length;
+
+		for (long w = offset >>> 6; w <= (end - 1) >>> 6; w++) {
+			// the pattern bit representing the value of bit 0 of this word
+			long position = Math.floorMod((low - 1) / 2 + (w << 6) - offset, (long) PATTERN_SIZE);
+			int index = (int) (position >>> 6);
+			int shift = (int) (position & 63);
+
+			long marks = PATTERN[index] >>> shift;
+
+			if (shift != 0) {
+				marks |= PATTERN[(index + 1) % PATTERN.length] << (64 - shift);
+			}
+
+			// ignore bits outside of the segment in the first and last words
+			if (w == offset >>> 6) {
+				marks &= -1L << offset;
+			}
+
+			if (w == (end - 1) >>> 6 && (end & 63) != 0) {
+				marks &= -1L >>> (64 - (end & 63));
+			}
+
+			bits[(int) w] |= marks;
+		}
+
+		// the primes 3, 5, and 7 are marked by the pattern but are not composite
+		for (int prime = 3; prime <= 7; prime += 2) {
+			long i = offset + (prime - low) / 2;
+
+			if (prime >= low && i < end) {
+				bits[(int) (i >>> 6)] &= ~(1L << i);
+			}
+		}
+	}
+
+	/**
+	 * Sieves a single segment directly into an odd-only prime bitset, where bit
+	 * {@code i} is set if the odd value {@code 2i + 1} is prime. Since segments
+	 * start on word boundaries, different segments may be sieved into the same
+	 * bitset concurrently without any locking. The bits for the segment must be
+	 * cleared before calling this method.
+	 *
+	 * @param bits the odd-only prime bitset covering at least the max value
+	 * @param segment the index of the segment to sieve
+	 * @param max the maximum value to evaluate if prime
+	 * @param primes the base primes up to at least the square root of the max
+	 */
+	public static void sieveInto(long[] bits, int segment, int max, int[] primes) {
+		long offset = (long) segment * SEGMENT_SIZE;
+		int length = segmentLength(segment, max);
+
+		sieveSegment(bits, offset, segmentLow(segment), length, primes);
+
+		// flip composite marks into prime bits, ignoring bits past the max
+		int first = (int) (offset >>> 6);
+		int words = (length + 63) >>> 6;
+
+		for (int w = first; w < first + words; w++) {
+			bits[w] = ~bits[w];
+		}
+
+		if ((length & 63) != 0) {
+			bits[first + words - 1] &= -1L >>> (64 - (length & 63));
+		}
+	}
+
+	/**
+	 * Returns the unmarked (prime) bits of one word of a sieved segment,
+	 * ignoring any bits past the end of the segment.
+	 *
+	 * @param bits the sieved segment bits
+	 * @param word the index of the word
+	 * @param length the number of odd values represented by the segment
+	 * @return the unmarked bits of the word
+	 */
+	private static long unmarked(long[] bits, int word, int length) {
+		long unmarked = ~bits[word];
+
+		if (word == (length - 1) >>> 6 && (length & 63) != 0) {
+			unmarked &= -1L >>> (64 - (length & 63));
+		}
+
+		return unmarked;
+	}
+
+	/**
+	 * Passes each unmarked (prime) value in a sieved segment to the action in
+	 * increasing order.
+	 *
+	 * @param bits the sieved segment bits
+	 * @param low the first (odd) value represented by the segment
+	 * @param length the number of odd values represented by the segment
+	 * @param action the action to perform on each prime
+	 *
+	 * @see #sieveSegment(long[], long, long, int, int[])
+	 */
+	public static void forEachUnmarked(long[] bits, long low, int length, IntConsumer action) {
+		int words = (length + 63) >>> 6;
+
+		for (int w = 0; w < words; w++) {
+			long word = unmarked(bits, w, length);
+
+			while (word != 0) {
+				int bit = Long.numberOfTrailingZeros(word);
+				action.accept((int) (low + 2L * ((w << 6) + bit)));
+				word &= word - 1;
+			}
+		}
+	}
+
+	/**
+	 * Passes each unmarked (prime) value in a sieved segment of a window to the
+	 * action in increasing order, for values that may not fit in an int.
+	 *
+	 * @param bits the sieved segment bits
+	 * @param low the first (odd) value represented by the segment
+	 * @param length the number of odd values represented by the segment
+	 * @param action the action to perform on each prime
+	 *
+	 * @see #forEachUnmarked(long[], long, int, IntConsumer)
+	 */
+	public static void forEachUnmarkedLong(long[] bits, long low, int length, LongConsumer action) {
+		int words = (length + 63) >>> 6;
+
+		for (int w = 0; w < words; w++) {
+			long word = unmarked(bits, w, length);
+
+			while (word != 0) {
+				int bit = Long.numberOfTrailingZeros(word);
+				action.accept(low + 2L * ((w << 6) + bit));
+				word &= word - 1;
+			}
+		}
+	}
+
+	/**
+	 * Counts the unmarked (prime) values in a sieved segment.
+	 *
+	 * @param bits the sieved segment bits
+	 * @param length the number of odd values represented by the segment
+	 * @return the number of primes in the segment
+	 *
+	 * @see #sieveSegment(long[], long, long, int, int[])
+	 */
+	public static int countUnmarked(long[] bits, int length) {
+		int words = (length + 63) >>> 6;
+		int count = 0;
+
+		for (int w = 0; w < words; w++) {
+			count += Long.bitCount(unmarked(bits, w, length));
+		}
+
+		return count;
+	}
+
+	/**
+	 * Passes every prime less than or equal to the max value to the action in
+	 * increasing order. Only one segment is kept in memory at a time.
+	 *
+	 * @param max the maximum value to evaluate if prime
+	 * @param action the action to perform on each prime
+	 */
+	public static void forEachPrime(int max, IntConsumer action) {
+		if (max < 2) {
+			return;
+		}
+
+		action.accept(2);
+
+		int[] primes = basePrimes(sqrt(max));
+		long[] bits = new long[SEGMENT_SIZE >>> 6];
+
+		for (int segment = 0; segment < segments(max); segment++) {
+			long low = segmentLow(segment);
+			int length = segmentLength(segment, max);
+
+			Arrays.fill(bits, 0, (length + 63) >>> 6, 0L);
+			sieveSegment(bits, 0, low, length, primes);
+			forEachUnmarked(bits, low, length, action);
+		}
+	}
+
+	/**
+	 * Counts the primes less than or equal to the max value. Only one segment is
+	 * kept in memory at a time.
+	 *
+	 * @param max the maximum value to evaluate if prime
+	 * @return the number of primes found up to and including max
+	 */
+	public static int count(int max) {
+		if (max < 2) {
+			return 0;
+		}
+
+		int count = 1; // for the prime 2
+		int[] primes = basePrimes(sqrt(max));
+		long[] bits = new long[SEGMENT_SIZE >>> 6];
+
+		for (int segment = 0; segment < segments(max); segment++) {
+			int length = segmentLength(segment, max);
+
+			Arrays.fill(bits, 0, (length + 63) >>> 6, 0L);
+			sieveSegment(bits, 0, segmentLow(segment), length, primes);
+			count += countUnmarked(bits, length);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Returns a lazy, ordered stream of the primes less than or equal to the max
+	 * value. Segments are only sieved as the stream is consumed, so operations
+	 * like {@link IntStream#limit(long)} or
+	 * {@link IntStream#anyMatch(java.util.function.IntPredicate)} stop sieving
+	 * early. Parallel streams split the remaining segments between threads.
+	 *
+	 * @param max the maximum value to evaluate if prime
+	 * @return lazy stream of primes up to and including max
+	 *
+	 * @see #stream(long, long)
+	 */
+	public static IntStream stream(int max) {
+		return stream(0, max).mapToInt(prime -> (int) prime);
+	}
+
+	/**
+	 * Returns a lazy, ordered stream of every prime that fits in an int.
+	 *
+	 * @return lazy stream of all int primes
+	 *
+	 * @see #stream(int)
+	 */
+	public static IntStream stream() {
+		return stream(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns a lazy iterator over the primes less than or equal to the max
+	 * value in increasing order.
+	 *
+	 * @param max the maximum value to evaluate if prime
+	 * @return lazy iterator over the primes
+	 *
+	 * @see #stream(int)
+	 */
+	public static PrimitiveIterator.OfInt iterator(int max) {
+		return stream(max).iterator();
+	}
+
+	/**
+	 * Returns a lazy, ordered stream of the primes between the lower and upper
+	 * values (inclusive). Only the base primes up to the square root of the upper
+	 * value and the window itself are sieved, so narrow windows of large values
+	 * are cheap. Parallel streams split the window between threads.
+	 *
+	 * @param lo the smallest value to include
+	 * @param hi the largest value to include, up to {@link #RANGE_MAX}
+	 * @return lazy stream of primes in the window
+	 * @throws IllegalArgumentException if hi is larger than {@link #RANGE_MAX}
+	 */
+	public static LongStream stream(long lo, long hi) {
+		return StreamSupport.longStream(new PrimeSpliterator(lo, hi), false);
+	}
+
+	/**
+	 * Counts the primes between the lower and upper values (inclusive).
+	 *
+	 * @param lo the smallest value to include
+	 * @param hi the largest value to include, up to {@link #RANGE_MAX}
+	 * @return the number of primes in the window
+	 * @throws IllegalArgumentException if hi is larger than {@link #RANGE_MAX}
+	 *
+	 * @see #stream(long, long)
+	 */
+	public static long count(long lo, long hi) {
+		return new PrimeSpliterator(lo, hi).countRemaining();
+	}
+
+	/**
+	 * Returns the primes between the lower and upper values (inclusive).
+	 *
+	 * @param lo the smallest value to include
+	 * @param hi the largest value to include, up to {@link #RANGE_MAX}
+	 * @return sorted array of primes in the window
+	 * @throws IllegalArgumentException if hi is larger than {@link #RANGE_MAX}
+	 *
+	 * @see #stream(long, long)
+	 */
+	public static long[] primes(long lo, long hi) {
+		return stream(lo, hi).toArray();
+	}
+
+	/**
+	 * Returns a compact set of all primes less than or equal to the max value,
+	 * using one bit per odd value.
+	 *
+	 * @param max the maximum value to evaluate if prime
+	 * @return all prime numbers found up to and including max
+	 */
+	public static PrimeSet primeSet(int max) {
+		long[] bits = new long[PrimeSet.words(max)];
+		int[] primes = basePrimes(sqrt(Math.max(max, 0)));
+
+		for (int segment = 0; segment < segments(max); segment++) {
+			sieveInto(bits, segment, max, primes);
+		}
+
+		return new PrimeSet(bits, max);
+	}
+
+	/**
+	 * Generates the primes in a window one segment at a time as they are
+	 * requested. Splits by handing the first half of the segments not yet sieved
+	 * (along with any partially consumed segment) to the new spliterator.
+	 */
+	private static class PrimeSpliterator implements Spliterator.OfLong {
+		/** The largest value in the window. */
+		private final long hi;
+
+		/** The first odd value in the window, where the first segment starts. */
+		private final long first;
+
+		/** The base primes, shared by every split. */
+		private final int[] primes;
+
+		/** Index of the next segment to sieve. */
+		private int segment;
+
+		/** Index of the segment to stop before. */
+		private int end;
+
+		/** Whether the prime 2 still needs to be returned. */
+		private boolean two;
+
+		/** The current sieved segment, or null if none has been sieved yet. */
+		private long[] bits;
+
+		/** The first value represented by the current segment. */
+		private long low;
+
+		/** The number of odd values represented by the current segment. */
+		private int length;
+
+		/** Index of the current word within the current segment. */
+		private int word;
+
+		/** The remaining unmarked bits of the current word. */
+		private long remaining;
+
+		/**
+		 * Initializes a spliterator over the primes in a window.
+		 *
+		 * @param lo the smallest value in the window
+		 * @param hi the largest value in the window
+		 * @throws IllegalArgumentException if hi is larger than {@link #RANGE_MAX}
+		 */
+		public PrimeSpliterator(long lo, long hi) {
+			this.end = segments(lo, hi);
+			this.hi = hi;
+			this.first = segmentLow(lo, 0);
+			this.primes = basePrimes(sqrt(Math.max(hi, 0)));
+			this.segment = 0;
+			this.two = lo <= 2 && hi >= 2;
+		}
+
+		/**
+		 * Initializes a prefix of another spliterator, taking over its current
+		 * segment and the segments up to the end provided.
+		 *
+		 * @param other the spliterator being split
+		 * @param end index of the segment to stop before
+		 */
+		private PrimeSpliterator(PrimeSpliterator other, int end) {
+			this.hi = other.hi;
+			this.first = other.first;
+			this.primes = other.primes;
+			this.segment = other.segment;
+			this.end = end;
+			this.two = other.two;
+			this.bits = other.bits;
+			this.low = other.low;
+			this.length = other.length;
+			this.word = other.word;
+			this.remaining = other.remaining;
+		}
+
+		/**
+		 * Returns the first value represented by a segment of the window.
+		 *
+		 * @param index the index of the segment
+		 * @return the first value in the segment
+		 */
+		private long low(int index) {
+			return first + 2L * index * SEGMENT_SIZE;
+		}
+
+		/**
+		 * Sieves the next segment.
+		 */
+		private void sieveNext() {
+			if (bits == null) {
+				bits = new long[SEGMENT_SIZE >>> 6];
+			}
+
+			low = low(segment);
+			length = (int) Math.min(SEGMENT_SIZE, (hi - low) / 2 + 1);
+			segment++;
+
+			Arrays.fill(bits, 0, (length + 63) >>> 6, 0L);
+			sieveSegment(bits, 0, low, length, primes);
+
+			word = 0;
+			remaining = unmarked(bits, 0, length);
+		}
+
+		/**
+		 * Moves to the next word with unmarked bits, sieving the next segment if
+		 * needed.
+		 *
+		 * @return false if there are no more primes
+		 */
+		private boolean advance() {
+			while (remaining == 0) {
+				if (bits != null && word < (length - 1) >>> 6) {
+					remaining = unmarked(bits, ++word, length);
+				}
+				else if (segment < end) {
+					sieveNext();
+				}
+				else {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		@Override
+		public boolean tryAdvance(LongConsumer action) {
+			if (two) {
+				two = false;
+				action.accept(2);
+				return true;
+			}
+
+			if (!advance()) {
+				return false;
+			}
+
+			int bit = Long.numberOfTrailingZeros(remaining);
+			remaining &= remaining - 1;
+			action.accept(low + 2L * ((word << 6) + bit));
+			return true;
+		}
+
+		/**
+		 * Counts the remaining primes without passing each one to an action.
+		 *
+		 * @return the number of remaining primes
+		 */
+		public long countRemaining() {
+			long count = (two ? 1 : 0) + Long.bitCount(remaining);
+			two = false;
+			remaining = 0;
+
+			while (bits != null && word < (length - 1) >>> 6) {
+				count += Long.bitCount(unmarked(bits, ++word, length));
+			}
+
+			while (segment < end) {
+				sieveNext();
+				count += countUnmarked(bits, length);
+				word = (length - 1) >>> 6;
+				remaining = 0;
+			}
+
+			return count;
+		}
+
+		@Override
+		public OfLong trySplit() {
+			if (end - segment < 2) {
+				return null;
+			}
+
+			int middle = (segment + end) >>> 1;
+			PrimeSpliterator prefix = new PrimeSpliterator(this, middle);
+
+			segment = middle;
+			two = false;
+			bits = null;
+			remaining = 0;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			// approximate the count of primes in the window by x / ln(x)
+			double start = bits == null ? low(segment) : low + 2.0 * (word << 6);
+			double stop = Math.min(hi, low(end) - 1);
+			double estimate = stop / Math.log(Math.max(stop, 2)) - start / Math.log(Math.max(start, 2));
+			return Math.max(0, Math.round(estimate)) + (two ? 1 : 0) + Long.bitCount(remaining);
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | DISTINCT | SORTED | NONNULL | IMMUTABLE;
+		}
+
+		@Override
+		public Comparator<? super Long> getComparator() {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,260 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+import java.util.zip.CRC32C;
+
+/**
+ * Saves a {@link PrimeSet} to a compact file and opens it again later without
+ * recomputing any primes. The file is memory-mapped when opened, so queries and
+ * iteration read directly from the mapped pages without copying the bitset
+ * onto the heap, and only the pages actually used are ever read from disk.
+ *
+ * <p>The file is a {@value #HEADER} byte header followed by the odd-only bitset
+ * and then the directory of counts, all in little-endian byte order. The header
+ * contains:
+ *
+ * <ul>
+ * <li>the magic number {@code PRIMESET} (8 bytes)</li>
+ * <li>the format version (4 bytes)</li>
+ * <li>the maximum value evaluated (4 bytes)</li>
+ * <li>the number of words in the bitset (4 bytes)</li>
+ * <li>the number of entries in the directory of counts (4 bytes)</li>
+ * <li>the CRC-32C checksum of everything after the header (8 bytes)</li>
+ * </ul>
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Summer 2021
+ */
+public class PrimeTable {
+	/** The first 8 bytes of every prime table, the ASCII text "PRIMESET". */
+	public static final long MAGIC = 0x5445_5345_4d49_5250L;
+
+	/** The current file format version. */
+	public static final int VERSION = 1;
+
+	/** Number of bytes in the header, which keeps the bitset 8-byte aligned. */
+	public static final int HEADER = 64;
+
+	/** Number of bytes buffered at a time when writing. */
+	private static final int BUFFER = 1 << 16;
+
+	/** Prevent instantiating this class of static methods. */
+	private PrimeTable() {
+	}
+
+	/**
+	 * Writes the entire prime set (ignoring the bounds of any range view) to a
+	 * file. The file is written to a temporary file first and then moved into
+	 * place, so other processes never see a partially written table.
+	 *
+	 * @param primes the prime set to write
+	 * @param path the path of the file to write
+	 * @throws IOException if unable to write the file
+	 */
+	public static void write(PrimeSet primes, Path path) throws IOException {
+		LongBuffer bits = primes.bits();
+		IntBuffer ranks = primes.ranks();
+
+		Path absolute = path.toAbsolutePath();
+		Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+			CRC32C checksum = new CRC32C();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+
+			channel.position(HEADER);
+
+			while (bits.hasRemaining()) {
+				buffer.clear();
+
+				while (bits.hasRemaining() && buffer.remaining() >= Long.BYTES) {
+					buffer.putLong(bits.get());
+				}
+
+				flush(channel, buffer, checksum);
+			}
+
+			while (ranks.hasRemaining()) {
+				buffer.clear();
+
+				while (ranks.hasRemaining() && buffer.remaining() >= Integer.BYTES) {
+					buffer.putInt(ranks.get());
+				}
+
+				flush(channel, buffer, checksum);
+			}
+
+			buffer.clear();
+			buffer.putLong(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(primes.max());
+			buffer.putInt(bits.limit());
+			buffer.putInt(ranks.limit());
+			buffer.putLong(checksum.getValue());
+
+			while (buffer.position() < HEADER) {
+				buffer.put((byte) 0);
+			}
+
+			buffer.flip();
+
+			channel.position(0);
+
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+
+			channel.force(false);
+		}
+		catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+
+		Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Writes the buffered bytes to the channel and adds them to the checksum.
+	 *
+	 * @param channel the channel to write to
+	 * @param buffer the buffer to write
+	 * @param checksum the running checksum
+	 * @throws IOException if unable to write
+	 */
+	private static void flush(FileChannel channel, ByteBuffer buffer, CRC32C checksum) throws IOException {
+		buffer.flip();
+		checksum.update(buffer.duplicate());
+
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Opens a prime table previously written by
+	 * {@link #write(PrimeSet, Path)} without verifying the checksum. Only the
+	 * header is validated, so opening takes constant time regardless of the
+	 * size of the table.
+	 *
+	 * @param path the path of the file to open
+	 * @return the prime set backed by the mapped file
+	 * @throws IOException if unable to open the file or the header is invalid
+	 *
+	 * @see #open(Path, boolean)
+	 */
+	public static PrimeSet open(Path path) throws IOException {
+		return open(path, false);
+	}
+
+	/**
+	 * Opens a prime table previously written by {@link #write(PrimeSet, Path)}.
+	 * The file is mapped read-only and remains mapped until the returned set is
+	 * garbage collected.
+	 *
+	 * @param path the path of the file to open
+	 * @param verify whether to verify the checksum, which reads the entire file
+	 * @return the prime set backed by the mapped file
+	 * @throws IOException if unable to open the file, or the header or checksum
+	 *   is invalid
+	 */
+	public static PrimeSet open(Path path, boolean verify) throws IOException {
+		MappedByteBuffer mapped;
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+
+			if (size < HEADER || size > Integer.MAX_VALUE) {
+				throw new IOException("Invalid prime table size " + size + " bytes: " + path);
+			}
+
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+
+		ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+		long magic = buffer.getLong(0);
+		int version = buffer.getInt(8);
+		int max = buffer.getInt(12);
+		int words = buffer.getInt(16);
+		int blocks = buffer.getInt(20);
+		long expected = buffer.getLong(24);
+
+		if (magic != MAGIC) {
+			throw new IOException("Not a prime table: " + path);
+		}
+
+		if (version != VERSION) {
+			throw new IOException("Unsupported prime table version " + version + ": " + path);
+		}
+
+		if (words != PrimeSet.words(max) || blocks != PrimeSet.blocks(words)
+				|| buffer.capacity() != HEADER + (long) words * Long.BYTES + (long) blocks * Integer.BYTES) {
+			throw new IOException("Corrupt prime table header: " + path);
+		}
+
+		ByteBuffer data = buffer.position(HEADER).slice().order(ByteOrder.LITTLE_ENDIAN);
+
+		if (verify) {
+			CRC32C checksum = new CRC32C();
+			checksum.update(data.duplicate());
+
+			if (checksum.getValue() != expected) {
+				throw new IOException("Prime table checksum mismatch: " + path);
+			}
+		}
+
+		LongBuffer bits = data.limit(words * Long.BYTES).slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+		IntBuffer ranks = data.limit(data.capacity()).position(words * Long.BYTES).slice()
+				.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+
+		return new PrimeSet(bits, ranks, max);
+	}
+
+	/**
+	 * Opens a prime table if it exists and covers at least the max value.
+	 * Otherwise sieves the primes with a work queue and writes a new table for
+	 * next time. A smaller existing table is extended instead of sieving again
+	 * from the start.
+	 *
+	 * @param path the path of the file to open or create
+	 * @param max the maximum value to evaluate if prime
+	 * @param threads number of worker threads to use if sieving is needed
+	 * @return all prime numbers found up to and including max
+	 * @throws IOException if unable to write the new table
+	 * @throws CancellationException if interrupted while sieving
+	 *
+	 * @see PrimeFinder#extend(PrimeSet, int, int)
+	 */
+	public static PrimeSet openOrCreate(Path path, int max, int threads) throws IOException {
+		PrimeSet prefix = null;
+
+		if (Files.isReadable(path)) {
+			try {
+				prefix = open(path);
+
+				if (prefix.max() >= max) {
+					return prefix.range(0, max);
+				}
+			}
+			catch (IOException e) {
+				System.err.println("Warning: Replacing unreadable prime table " + path + ": " + e.getMessage());
+			}
+		}
+
+		// the new table is moved into place, so the mapped prefix stays valid
+		PrimeSet primes = PrimeFinder.extend(prefix, max, threads);
+		write(primes, path);
+		return primes;
+	}
+}
@@ -0,0 +1,129 @@
+import java.util.function.IntConsumer;
+
+/**
+ * A mod-30 factorization wheel, which enumerates only the values that are not
+ * a multiple of 2, 3, or 5. Only 8 out of every 30 values are coprime to 30,
+ * so skipping the rest removes about 73% of the candidates that could be
+ * prime before any of them are tested.
+ *
+ * <p>The values coprime to 30 repeat every 30 values at the same 8 residues,
+ * called spokes. Moving from one spoke to the next adds the gap between them.
+ *
+ * @see <a href="https://en.wikipedia.org/wiki/Wheel_factorization">Wheel
+ * Factorization</a>
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Summer 2021
+ */
+public class Wheel {
+	/** The product of the primes the wheel skips multiples of. */
+	public static final int MODULUS = 30;
+
+	/** The number of spokes, or values coprime to the modulus per turn. */
+	public static final int SPOKES = 8;
+
+	/** The residues coprime to the modulus, in increasing order. */
+	private static final int[] RESIDUES = { 1, 7, 11, 13, 17, 19, 23, 29 };
+
+	/** The gap from each spoke to the next spoke. */
+	private static final int[] GAPS = { 6, 4, 2, 4, 2, 4, 6, 2 };
+
+	/**
+	 * The distance from each residue to the next residue coprime to the
+	 * modulus (or 0 if it is coprime already).
+	 */
+	private static final int[] NEXT = new int[MODULUS];
+
+	/** The spoke of each residue coprime to the modulus, or -1 if none. */
+	private static final int[] SPOKE = new int[MODULUS];
+
+	static {
+		for (int r = 0; r < MODULUS; r++) {
+			int distance = 0;
+
+			while (!coprime(r + distance)) {
+				distance++;
+			}
+
+			NEXT[r] = distance;
+			SPOKE[r] = -1;
+		}
+
+		for (int s = 0; s < SPOKES; s++) {
+			SPOKE[RESIDUES[s]] = s;
+		}
+	}
+
+	/** Prevent instantiating this class of static methods. */
+	private Wheel() {
+	}
+
+	/**
+	 * Returns whether the value is not a multiple of 2, 3, or 5.
+	 *
+	 * @param value the non-negative value to check
+	 * @return true if the value is coprime to the modulus
+	 */
+	public static boolean coprime(long value) {
+		return (value & 1) != 0 && value % 3 != 0 && value % 5 != 0;
+	}
+
+	/**
+	 * Returns the smallest value greater than or equal to the value provided
+	 * that is coprime to the modulus.
+	 *
+	 * @param value the non-negative value to start from
+	 * @return the next value on the wheel
+	 */
+	public static long next(long value) {
+		return value + NEXT[(int) (value % MODULUS)];
+	}
+
+	/**
+	 * Returns the spoke a value coprime to the modulus is on.
+	 *
+	 * @param value the non-negative value coprime to the modulus
+	 * @return the index of the spoke
+	 */
+	public static int spoke(long value) {
+		return SPOKE[(int) (value % MODULUS)];
+	}
+
+	/**
+	 * Returns the gap from a spoke to the next spoke.
+	 *
+	 * @param spoke the index of the spoke
+	 * @return the distance to the next value on the wheel
+	 */
+	public static int gap(int spoke) {
+		return GAPS[spoke];
+	}
+
+	/**
+	 * Passes every value from start to end (inclusive) that could be prime to
+	 * the action in increasing order. This includes the primes 2, 3, and 5
+	 * themselves, and every value coprime to the modulus (including 1).
+	 *
+	 * @param start the first value in the range
+	 * @param end the last value in the range (inclusive)
+	 * @param action the action to perform on each candidate
+	 */
+	public static void forEachCandidate(int start, int end, IntConsumer action) {
+		// the values below the first full spoke are checked one at a time
+		for (int i = Math.max(start, 1); i <= end && i < RESIDUES[1]; i++) {
+			if (i <= 3 || i == 5) {
+				action.accept(i);
+			}
+		}
+
+		long value = next(Math.max(start, RESIDUES[1]));
+		int spoke = spoke(value);
+
+		while (value <= end) {
+			action.accept((int) value);
+			value += GAPS[spoke];
+			spoke = (spoke + 1) & (SPOKES - 1);
+		}
+	}
+}
@@ -1,5 +1,26 @@
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.IntToDoubleFunction;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -9,8 +30,25 @@ import org.apache.logging.log4j.Logger;
 
 /**
  * A simple work queue implementation based on the IBM developerWorks article by
- * Brian Goetz. It is up to the user of this class to keep track of whether
- * there is any pending work remaining.
+ * Brian Goetz. Keeps track of pending work so that users of this class can
+ * wait for all submitted work to finish.
+ *
+ * <p>By default, each worker has its own deque of tasks and idle workers steal
+ * work from the others, so workers rarely contend with each other and only a
+ * sleeping worker is woken when new work arrives. The original single shared
+ * queue is still available with {@link Scheduling#SHARED}.
+ *
+ * <p>Work requests may also be given a {@link Priority}. Each priority has
+ * its own lane, and workers always check the lanes from highest to lowest
+ * priority, so small interactive requests do not wait behind a large backlog
+ * of bulk work. Only a work request that is already running can delay them.
+ *
+ * <p>Both of the above queues are unbounded. A work queue created with a
+ * capacity instead keeps pending work requests in fixed ring buffers, and
+ * applies an {@link Overflow} policy when a producer gets too far ahead of the
+ * workers. The queue itself never allocates per work request, although about
+ * one in every {@link #WAIT_SAMPLE_RATE} requests is still wrapped to time its
+ * wait, and {@link #executeAll(Collection)} copies each batch into a list.
  *
  * @see <a href="https://www.ibm.com/developerworks/library/j-jtp0730/">
  * Java Theory and Practice: Thread Pools and Work Queues</a>
@@ -20,121 +58,1783 @@ import org.apache.logging.log4j.Logger;
  * @version Summer 2021
  */
 public class WorkQueue {
-	// TODO Modify existing methods if necessary.
-	// TODO Add new members and methods if necessary.
-	
+	/**
+	 * The different ways work requests may be scheduled onto worker threads.
+	 */
+	public enum Scheduling {
+		/** All workers share a single queue guarded by a single lock. */
+		SHARED,
+
+		/** Each worker has its own deque, and idle workers steal from others. */
+		STEALING
+	}
+
+	/**
+	 * The priorities a work request may be given, from highest to lowest. Each
+	 * priority is kept in a separate lane of the queue.
+	 */
+	public enum Priority {
+		/** Small latency-sensitive work, run before any other waiting work. */
+		INTERACTIVE,
+
+		/** Ordinary work, used when no priority is given. */
+		NORMAL,
+
+		/** Large background work, run when no other work is waiting. */
+		BULK
+	}
+
+	/**
+	 * What a bounded work queue does with a work request when it already holds
+	 * as many pending work requests as its capacity.
+	 */
+	public enum Overflow {
+		/**
+		 * Waits until there is room in the queue. Worker threads of the same
+		 * queue run the work request themselves instead, so they never wait on
+		 * the other workers.
+		 */
+		BLOCK,
+
+		/** Runs the work request on the thread that submitted it. */
+		CALLER_RUNS,
+
+		/**
+		 * Counts the work request as rejected and throws a
+		 * {@link RejectedExecutionException}.
+		 */
+		REJECT
+	}
+
 	/**
 	 * Pool of worker threads that will wait in the background until work is
 	 * available.
 	 */
 	private final Worker[] workers;
 
-	/** Queue of pending work requests. */
-	private final LinkedList<Runnable> queue;
+	/** Holds the pending work requests until a worker is available. */
+	private final Scheduler scheduler;
+
+	/** Used to signal the queue should be shutdown. */
+	private volatile boolean shutdown;
+
+	/**
+	 * Number of work requests submitted. Striped so that submitting threads do
+	 * not contend with each other.
+	 */
+	private final LongAdder submitted;
+
+	/**
+	 * Number of work requests finished (successfully or not). Striped so that
+	 * worker threads do not contend with each other.
+	 */
+	private final LongAdder completed;
+
+	/** Threads parked in {@link #finish()} waiting for pending work. */
+	private final ConcurrentLinkedQueue<Thread> waiters;
+
+	/** Number of work requests that threw an exception. */
+	private final LongAdder failed;
+
+	/** Number of work requests rejected because the queue was full. */
+	private final LongAdder rejected;
+
+	/** What to do with a work request when the queue is full. */
+	private final Overflow overflow;
+
+	/** Time (in nanoseconds) sampled work requests spent waiting to run. */
+	private final LatencyHistogram queueWait;
+
+	/** The same wait times as above, separated by priority. */
+	private final LatencyHistogram[] laneWait;
+
+	/** Time (in nanoseconds) work requests spent running. */
+	private final LatencyHistogram runTime;
+
+	/** Read-only view of the metrics collected by this work queue. */
+	private final Metrics metrics;
+
+	/**
+	 * On average, one out of this many work requests is timed while waiting in
+	 * the queue. Sampling avoids allocating a timestamp for every request.
+	 */
+	public static final int WAIT_SAMPLE_RATE = 64;
+
+	/**
+	 * Each worker logs a single trace message summarizing this many work
+	 * requests, instead of logging every work request it runs.
+	 */
+	public static final int TRACE_INTERVAL = 1024;
+
+	/** The default number of threads to use when not specified. */
+	public static final int DEFAULT = 5;
+
+	/**
+	 * The number of chunks per worker thread used when splitting a range, so
+	 * that workers which finish early can pick up more of the range.
+	 */
+	public static final int CHUNKS_PER_WORKER = 4;
+
+	/**
+	 * Each worker checks the lanes from lowest to highest priority once out of
+	 * this many times it looks for work, so a steady stream of higher priority
+	 * work slows down lower priority work instead of starving it.
+	 */
+	public static final int FAIRNESS_INTERVAL = 32;
+
+	/** The number of lanes, one per priority. */
+	private static final int LANES = Priority.values().length;
+
+	/** The order lanes are usually checked in. */
+	private static final int[] HIGHEST_FIRST = { 0, 1, 2 };
+
+	/** The order lanes are checked in to give lower priorities a turn. */
+	private static final int[] LOWEST_FIRST = { 2, 1, 0 };
+
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/** Creates platform worker threads with the traditional worker names. */
+	private static final ThreadFactory PLATFORM = task -> {
+		Thread thread = new Thread(task);
+		thread.setName("Worker" + thread.getName());
+		return thread;
+	};
+
+	/** Creates virtual worker threads, or null if not supported by this JVM. */
+	private static final ThreadFactory VIRTUAL = virtualThreadFactory();
+
+	/** The worker (if any) running on the current thread. */
+	private static final ThreadLocal<Worker> CURRENT = new ThreadLocal<Worker>();
+	
+	/**
+	 * Starts a work queue with the default number of threads.
+	 *
+	 * @see #WorkQueue(int)
+	 */
+	public WorkQueue() {
+		this(DEFAULT);
+	}
+
+	/**
+	 * Starts a work queue with the specified number of threads, using work
+	 * stealing to schedule work requests.
+	 *
+	 * @param threads number of worker threads; should be greater than 1
+	 * @see #WorkQueue(int, Scheduling)
+	 */
+	public WorkQueue(int threads) {
+		this(threads, Scheduling.STEALING);
+	}
+
+	/**
+	 * Starts a work queue with the specified number of threads and scheduling.
+	 *
+	 * @param threads number of worker threads; should be greater than 1
+	 * @param scheduling how to schedule work requests onto worker threads
+	 */
+	public WorkQueue(int threads, Scheduling scheduling) {
+		this(threads, scheduling, PLATFORM);
+	}
+
+	/**
+	 * Starts a work queue with the specified number of threads and scheduling,
+	 * using the factory to create the worker threads.
+	 *
+	 * @param threads number of worker threads; should be greater than 1
+	 * @param scheduling how to schedule work requests onto worker threads
+	 * @param factory used to create the worker threads
+	 */
+	public WorkQueue(int threads, Scheduling scheduling, ThreadFactory factory) {
+		this(threads, scheduling, factory, 0, Overflow.BLOCK);
+	}
+
+	/**
+	 * Starts a work queue with the specified number of threads that holds at
+	 * most the capacity in pending work requests. Pending work requests are kept
+	 * in ring buffers shared by all of the workers.
+	 *
+	 * @param threads number of worker threads; should be greater than 1
+	 * @param capacity the maximum number of work requests waiting to run
+	 * @param overflow what to do with work requests when the queue is full
+	 * @throws IllegalArgumentException if the capacity is not positive
+	 */
+	public WorkQueue(int threads, int capacity, Overflow overflow) {
+		this(threads, Scheduling.SHARED, PLATFORM, checkCapacity(capacity), overflow);
+	}
+
+	/**
+	 * Checks the capacity of a bounded work queue before any worker threads
+	 * are started.
+	 *
+	 * @param capacity the maximum number of work requests waiting to run
+	 * @return the capacity
+	 * @throws IllegalArgumentException if the capacity is not positive
+	 */
+	private static int checkCapacity(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive.");
+		}
+
+		return capacity;
+	}
+
+	/**
+	 * Starts a work queue that is bounded if the capacity is positive, or
+	 * unbounded with the specified scheduling otherwise.
+	 *
+	 * @param threads number of worker threads; should be greater than 1
+	 * @param scheduling how to schedule work requests if unbounded
+	 * @param factory used to create the worker threads
+	 * @param capacity the maximum number of work requests waiting to run, or 0
+	 *   if unbounded
+	 * @param overflow what to do with work requests when the queue is full
+	 */
+	private WorkQueue(int threads, Scheduling scheduling, ThreadFactory factory, int capacity, Overflow overflow) {
+		this.workers = new Worker[threads];
+		this.shutdown = false;
+		this.submitted = new LongAdder();
+		this.completed = new LongAdder();
+		this.waiters = new ConcurrentLinkedQueue<Thread>();
+		this.failed = new LongAdder();
+		this.rejected = new LongAdder();
+		this.overflow = overflow;
+
+		if (capacity > 0) {
+			this.scheduler = new BoundedScheduler(capacity);
+		}
+		else if (scheduling == Scheduling.SHARED) {
+			this.scheduler = new SharedScheduler();
+		}
+		else {
+			this.scheduler = new StealingScheduler(threads);
+		}
+
+		this.queueWait = new LatencyHistogram();
+		this.laneWait = new LatencyHistogram[LANES];
+		this.runTime = new LatencyHistogram();
+		this.metrics = new Metrics();
+
+		for (int i = 0; i < LANES; i++) {
+			laneWait[i] = new LatencyHistogram();
+		}
+
+		// start the threads so they are waiting in the background
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker(i, factory);
+			workers[i].thread.start();
+		}
+		
+		log.debug("Work queue initialized with {} worker threads and {} scheduling.", workers.length,
+				capacity > 0 ? "bounded" : scheduling);
+	}
+
+	/**
+	 * Starts a work queue with one platform worker thread per available
+	 * processor, which is a good fit for CPU-bound work.
+	 *
+	 * @return the work queue
+	 * @see Runtime#availableProcessors()
+	 */
+	public static WorkQueue forProcessors() {
+		return new WorkQueue(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Starts a work queue with the specified number of virtual worker threads.
+	 * Virtual threads are cheap enough that the number of workers can be sized
+	 * for the number of blocking requests (such as I/O) in flight rather than
+	 * the number of processors. Falls back to platform threads if the JVM does
+	 * not support virtual threads.
+	 *
+	 * @param threads number of worker threads; should be greater than 1
+	 * @return the work queue
+	 * @see #supportsVirtualThreads()
+	 */
+	public static WorkQueue virtual(int threads) {
+		if (VIRTUAL == null) {
+			log.warn("Virtual threads not supported; using platform threads instead.");
+			return new WorkQueue(threads);
+		}
+
+		return new WorkQueue(threads, Scheduling.STEALING, VIRTUAL);
+	}
+
+	/**
+	 * Returns whether this JVM supports virtual threads (Java 21 or newer).
+	 *
+	 * @return true if virtual threads are supported
+	 */
+	public static boolean supportsVirtualThreads() {
+		return VIRTUAL != null;
+	}
+
+	/**
+	 * Looks up the virtual thread factory reflectively, so this class still
+	 * compiles and runs on releases before virtual threads were available.
+	 *
+	 * @return the virtual thread factory, or null if not supported
+	 */
+	private static ThreadFactory virtualThreadFactory() {
+		try {
+			Class<?> type = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = type.getMethod("name", String.class, long.class).invoke(builder, "VirtualWorker-", 0L);
+			return (ThreadFactory) type.getMethod("factory").invoke(builder);
+		}
+		catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Adds a work request to the queue. A thread will process this request when
+	 * available.
+	 *
+	 * @param task work request (in the form of a {@link Runnable} object)
+	 */
+	public void execute(Runnable task) {
+		execute(task, Priority.NORMAL);
+	}
+
+	/**
+	 * Adds a work request to the lane for its priority. A thread will process
+	 * this request when available and no higher priority work is waiting.
+	 *
+	 * @param task work request (in the form of a {@link Runnable} object)
+	 * @param priority the priority of the work request
+	 * @throws RejectedExecutionException if the queue is full and rejects it
+	 */
+	public void execute(Runnable task, Priority priority) {
+		incrementPending(1);
+		Runnable sampled = sample(task, priority);
+
+		if (!scheduler.offer(sampled, priority.ordinal())) {
+			overflow(sampled, priority.ordinal());
+		}
+	}
+
+	/**
+	 * Adds a collection of work requests to the queue at once. Unlike calling
+	 * {@link #execute(Runnable)} for each request, the queue is only updated and
+	 * signaled once, and only as many workers are woken up as there are
+	 * requests.
+	 *
+	 * @param tasks work requests (in the form of {@link Runnable} objects)
+	 */
+	public void executeAll(Collection<? extends Runnable> tasks) {
+		executeAll(tasks, Priority.NORMAL);
+	}
+
+	/**
+	 * Adds a collection of work requests with the same priority to the queue at
+	 * once, like {@link #executeAll(Collection)}.
+	 *
+	 * @param tasks work requests (in the form of {@link Runnable} objects)
+	 * @param priority the priority of every work request
+	 * @throws RejectedExecutionException if the queue is full and rejects the
+	 *   work requests that did not fit (the rest are still run)
+	 */
+	public void executeAll(Collection<? extends Runnable> tasks, Priority priority) {
+		if (!tasks.isEmpty()) {
+			List<Runnable> sampled = new ArrayList<Runnable>(tasks.size());
+
+			for (Runnable task : tasks) {
+				sampled.add(sample(task, priority));
+			}
+
+			incrementPending(tasks.size());
+			int queued = scheduler.offerAll(sampled, priority.ordinal());
+
+			if (queued < sampled.size()) {
+				if (overflow == Overflow.REJECT) {
+					reject(sampled.size() - queued);
+				}
+
+				for (int i = queued; i < sampled.size(); i++) {
+					overflow(sampled.get(i), priority.ordinal());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies the overflow policy to a work request that did not fit in the
+	 * queue. The work request has already been counted as pending.
+	 *
+	 * @param task work request
+	 * @param lane the lane for the priority of the work request
+	 * @throws RejectedExecutionException if the work request is rejected
+	 */
+	private void overflow(Runnable task, int lane) {
+		if (overflow == Overflow.REJECT) {
+			reject(1);
+		}
+
+		if (overflow == Overflow.CALLER_RUNS || isWorker()) {
+			runInCaller(task);
+			return;
+		}
+
+		try {
+			if (!scheduler.put(task, lane)) {
+				reject(1);
+			}
+		}
+		catch (InterruptedException e) {
+			System.err.println("Warning: Work queue interrupted while waiting for room.");
+			log.catching(Level.DEBUG, e);
+			Thread.currentThread().interrupt();
+			reject(1);
+		}
+	}
+
+	/**
+	 * Counts work requests as rejected instead of pending, and throws an
+	 * exception to tell the caller.
+	 *
+	 * @param count the number of work requests rejected
+	 * @throws RejectedExecutionException always
+	 */
+	private void reject(int count) {
+		rejected.add(count);
+		decrementSubmitted(count);
+		throw new RejectedExecutionException("Work queue rejected " + count + " work requests.");
+	}
+
+	/**
+	 * Runs a work request that did not fit in the queue on the current thread,
+	 * handling exceptions the same way as the worker threads.
+	 *
+	 * @param task work request
+	 */
+	private void runInCaller(Runnable task) {
+		try {
+			task.run();
+		}
+		catch (CancellationException e) {
+			log.debug("Caller stopped cancelled work.");
+		}
+		catch (RuntimeException e) {
+			System.err.println("Warning: Work queue encountered an exception while running.");
+			log.catching(Level.DEBUG, e);
+			failed.increment();
+		}
+		finally {
+			decrementPending();
+		}
+	}
+
+	/**
+	 * Randomly selects about one out of every {@link #WAIT_SAMPLE_RATE} work
+	 * requests to be timed while waiting in the queue.
+	 *
+	 * @param task work request
+	 * @param priority the priority of the work request
+	 * @return the work request, possibly wrapped to record its wait time
+	 */
+	private Runnable sample(Runnable task, Priority priority) {
+		if (ThreadLocalRandom.current().nextInt(WAIT_SAMPLE_RATE) == 0) {
+			return new Timed(task, laneWait[priority.ordinal()]);
+		}
+
+		return task;
+	}
+
+	/**
+	 * Returns a live, read-only view of the metrics collected by this work
+	 * queue. Reading the metrics is safe at any time from any thread.
+	 *
+	 * @return the metrics for this work queue
+	 */
+	public Metrics metrics() {
+		return metrics;
+	}
+
+	/**
+	 * Splits the range of values from start to end (inclusive) into contiguous
+	 * chunks sized for the number of worker threads, and adds one work request
+	 * per chunk to the queue. Creates {@link #CHUNKS_PER_WORKER} chunks per
+	 * worker, or fewer if the range is small.
+	 *
+	 * @param start the first value in the range
+	 * @param end the last value in the range (inclusive)
+	 * @param task the work to perform on each chunk of the range
+	 */
+	public void executeRange(int start, int end, RangeTask task) {
+		executeAll(perChunk(chunks(start, end), chunk -> () -> task.run(chunk[0], chunk[1])));
+	}
+
+	/**
+	 * Splits the range of values from start to end (inclusive) into contiguous
+	 * chunks like {@link #executeRange(int, int, RangeTask)}, and adds one work
+	 * request per chunk to the lane for the priority. Large background jobs
+	 * should use {@link Priority#BULK}, so that interactive work only ever waits
+	 * for a single chunk to finish.
+	 *
+	 * @param start the first value in the range
+	 * @param end the last value in the range (inclusive)
+	 * @param task the work to perform on each chunk of the range
+	 * @param priority the priority of every chunk
+	 */
+	public void executeRange(int start, int end, RangeTask task, Priority priority) {
+		executeAll(perChunk(chunks(start, end), chunk -> () -> task.run(chunk[0], chunk[1])), priority);
+	}
+
+	/**
+	 * Splits the range of values from start to end (inclusive) into contiguous
+	 * chunks of about equal estimated cost, and adds one work request per chunk
+	 * to the queue. Useful when the cost per value is uneven, so that equally
+	 * sized chunks would leave most workers idle while the most expensive chunk
+	 * finishes.
+	 *
+	 * @param start the first value in the range
+	 * @param end the last value in the range (inclusive)
+	 * @param task the work to perform on each chunk of the range
+	 * @param work the estimated total cost of every value up to and including
+	 *   the given value, which must never decrease as the value increases
+	 *
+	 * @see #executeRange(int, int, RangeTask)
+	 */
+	public void executeRange(int start, int end, RangeTask task, IntToDoubleFunction work) {
+		executeAll(perChunk(chunks(start, end, work), chunk -> () -> task.run(chunk[0], chunk[1])));
+	}
+
+	/**
+	 * Creates one work request per chunk, in the same order as the chunks. Every
+	 * range method uses this to turn the chunk boundaries into the requests it
+	 * adds to the queue.
+	 *
+	 * @param <T> the type of work request
+	 * @param chunks the first and last value (inclusive) of each chunk
+	 * @param request creates the work request for a chunk
+	 * @return the work request for each chunk in order
+	 */
+	private static <T> List<T> perChunk(int[][] chunks, Function<int[], T> request) {
+		List<T> tasks = new ArrayList<T>(chunks.length);
+
+		for (int[] chunk : chunks) {
+			tasks.add(request.apply(chunk));
+		}
+
+		return tasks;
+	}
+
+	/**
+	 * Splits the range of values from start to end (inclusive) into contiguous
+	 * chunks, with {@link #CHUNKS_PER_WORKER} chunks per worker or fewer if the
+	 * range is small.
+	 *
+	 * @param start the first value in the range
+	 * @param end the last value in the range (inclusive)
+	 * @return the first and last value (inclusive) of each chunk in order
+	 */
+	private int[][] chunks(int start, int end) {
+		if (start > end) {
+			return new int[0][];
+		}
+
+		long length = (long) end - start + 1;
+		int count = (int) Math.min(length, (long) workers.length * CHUNKS_PER_WORKER);
+		int[][] chunks = new int[count][];
+
+		for (int i = 0; i < count; i++) {
+			// spread the remainder so chunk sizes differ by at most one
+			int first = (int) (start + length * i / count);
+			int last = (int) (start + length * (i + 1) / count - 1);
+			chunks[i] = new int[] { first, last };
+		}
+
+		return chunks;
+	}
+
+	/**
+	 * Splits the range of values from start to end (inclusive) into contiguous
+	 * chunks of about equal estimated cost, with at most
+	 * {@link #CHUNKS_PER_WORKER} chunks per worker. The chunk boundaries are
+	 * found by binary search on the total cost, so the cost function is only
+	 * called a logarithmic number of times per chunk.
+	 *
+	 * @param start the first value in the range
+	 * @param end the last value in the range (inclusive)
+	 * @param work the estimated total cost of every value up to and including
+	 *   the given value, which must never decrease as the value increases
+	 * @return the first and last value (inclusive) of each chunk in order
+	 */
+	private int[][] chunks(int start, int end, IntToDoubleFunction work) {
+		if (start > end) {
+			return new int[0][];
+		}
+
+		long length = (long) end - start + 1;
+		int count = (int) Math.min(length, (long) workers.length * CHUNKS_PER_WORKER);
+
+		double before = start == Integer.MIN_VALUE ? 0 : work.applyAsDouble(start - 1);
+		double total = work.applyAsDouble(end) - before;
+
+		List<int[]> chunks = new ArrayList<int[]>(count);
+		int first = start;
+
+		for (int i = 1; i <= count && first <= end; i++) {
+			int last = end;
+
+			if (i < count) {
+				// find the smallest last value that reaches this share of the cost
+				double target = before + total * i / count;
+				long low = first;
+				long high = end;
+
+				while (low < high) {
+					long middle = (low + high) >> 1;
+
+					if (work.applyAsDouble((int) middle) >= target) {
+						high = middle;
+					}
+					else {
+						low = middle + 1;
+					}
+				}
+
+				last = (int) low;
+			}
+
+			chunks.add(new int[] { first, last });
+			first = last + 1;
+		}
+
+		return chunks.toArray(new int[chunks.size()][]);
+	}
+
+	/**
+	 * Adds a work request that produces a result to the queue.
+	 *
+	 * @param <T> the type of result
+	 * @param task work request (in the form of a {@link Callable} object)
+	 * @return a future used to retrieve the result once available
+	 */
+	public <T> Future<T> submit(Callable<T> task) {
+		return submit(task, Priority.NORMAL);
+	}
+
+	/**
+	 * Adds a work request that produces a result to the lane for its priority.
+	 *
+	 * @param <T> the type of result
+	 * @param task work request (in the form of a {@link Callable} object)
+	 * @param priority the priority of the work request
+	 * @return a future used to retrieve the result once available
+	 */
+	public <T> Future<T> submit(Callable<T> task, Priority priority) {
+		FutureTask<T> future = new FutureTask<T>(task);
+		execute(future, priority);
+		return future;
+	}
+
+	/**
+	 * Adds a collection of work requests that produce results to the queue at
+	 * once, and waits for all of them to finish. If called from one of this
+	 * queue's own worker threads, the caller runs any work requests that have
+	 * not started yet instead of blocking, so it cannot deadlock the pool.
+	 *
+	 * @param <T> the type of result
+	 * @param tasks work requests (in the form of {@link Callable} objects)
+	 * @return the result of each work request, in the same order as submitted
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws ExecutionException if any of the work requests threw an exception
+	 */
+	public <T> List<T> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+		return invokeAll(tasks, Priority.NORMAL);
+	}
+
+	/**
+	 * Adds a collection of work requests with the same priority that produce
+	 * results to the queue at once, and waits for all of them to finish like
+	 * {@link #invokeAll(Collection)}.
+	 *
+	 * @param <T> the type of result
+	 * @param tasks work requests (in the form of {@link Callable} objects)
+	 * @param priority the priority of every work request
+	 * @return the result of each work request, in the same order as submitted
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws ExecutionException if any of the work requests threw an exception
+	 */
+	public <T> List<T> invokeAll(Collection<? extends Callable<T>> tasks, Priority priority)
+			throws InterruptedException, ExecutionException {
+		List<FutureTask<T>> futures = new ArrayList<FutureTask<T>>(tasks.size());
+
+		for (Callable<T> task : tasks) {
+			futures.add(new FutureTask<T>(task));
+		}
+
+		executeAll(futures, priority);
+
+		boolean helping = isWorker();
+		List<T> results = new ArrayList<T>(futures.size());
+
+		for (FutureTask<T> future : futures) {
+			if (helping && !future.isDone()) {
+				// does nothing if another worker already started this future
+				future.run();
+			}
+
+			results.add(future.get());
+		}
+
+		return results;
+	}
+
+	/**
+	 * Splits the range of values from start to end (inclusive) the same way as
+	 * {@link #executeRange(int, int, RangeTask)}, and waits for the result of
+	 * every chunk.
+	 *
+	 * @param <T> the type of result
+	 * @param start the first value in the range
+	 * @param end the last value in the range (inclusive)
+	 * @param task the work to perform on each chunk of the range
+	 * @return the result of each chunk, in order from start to end
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws ExecutionException if any of the chunks threw an exception
+	 *
+	 * @see #invokeAll(Collection)
+	 */
+	public <T> List<T> invokeRange(int start, int end, RangeCallable<T> task) throws InterruptedException, ExecutionException {
+		return invokeAll(perChunk(chunks(start, end), chunk -> () -> task.call(chunk[0], chunk[1])));
+	}
+
+	/**
+	 * Splits the range of values from start to end (inclusive) into contiguous
+	 * chunks of about equal estimated cost like
+	 * {@link #executeRange(int, int, RangeTask, IntToDoubleFunction)}, and
+	 * waits for the result of every chunk.
+	 *
+	 * @param <T> the type of result
+	 * @param start the first value in the range
+	 * @param end the last value in the range (inclusive)
+	 * @param task the work to perform on each chunk of the range
+	 * @param work the estimated total cost of every value up to and including
+	 *   the given value, which must never decrease as the value increases
+	 * @return the result of each chunk, in order from start to end
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws ExecutionException if any of the chunks threw an exception
+	 *
+	 * @see #invokeRange(int, int, RangeCallable)
+	 */
+	public <T> List<T> invokeRange(int start, int end, RangeCallable<T> task, IntToDoubleFunction work)
+			throws InterruptedException, ExecutionException {
+		return invokeAll(perChunk(chunks(start, end, work), chunk -> () -> task.call(chunk[0], chunk[1])));
+	}
+
+	/**
+	 * Returns whether the current thread is one of the worker threads of this
+	 * queue.
+	 *
+	 * @return true if the current thread is a worker of this queue
+	 */
+	private boolean isWorker() {
+		Worker worker = CURRENT.get();
+		return worker != null && worker.owner() == this;
+	}
+
+	/**
+	 * Waits for all pending work to be finished. Does not terminate the worker
+	 * threads so that the work queue can continue to be used.
+	 */
+	public void finish() {
+		try {
+			awaitFinish(false, 0);
+		}
+		catch (InterruptedException e) {
+			System.err.println("Warning: Work queue interrupted while finishing.");
+			log.catching(Level.DEBUG, e);
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Waits up to the timeout for all pending work to be finished. Does not
+	 * terminate the worker threads so that the work queue can continue to be
+	 * used.
+	 *
+	 * @param timeout the maximum amount of time to wait
+	 * @return true if all pending work finished, false if the timeout elapsed or
+	 *   the thread was interrupted first
+	 */
+	public boolean finish(Duration timeout) {
+		try {
+			return awaitFinish(true, timeout.toNanos());
+		}
+		catch (InterruptedException e) {
+			System.err.println("Warning: Work queue interrupted while finishing.");
+			log.catching(Level.DEBUG, e);
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Parks the current thread until all pending work is finished. The thread is
+	 * only unparked by a worker when the pending work reaches zero.
+	 *
+	 * @param timed whether to give up after the timeout
+	 * @param nanos the timeout in nanoseconds (ignored if not timed)
+	 * @return true if all pending work finished, false if the timeout elapsed
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private boolean awaitFinish(boolean timed, long nanos) throws InterruptedException {
+		if (isFinished()) {
+			return true;
+		}
+
+		Thread current = Thread.currentThread();
+		long deadline = System.nanoTime() + nanos;
+
+		// logging may park this thread on a lock and use up a worker's unpark, so
+		// never log between checking for pending work and parking
+		log.debug("Waiting for {} pending work requests...", this::pending);
+
+		// register before checking again so a worker cannot miss this thread
+		waiters.add(current);
+
+		try {
+			while (!isFinished()) {
+				if (timed) {
+					long remaining = deadline - System.nanoTime();
+
+					if (remaining <= 0) {
+						return false;
+					}
+
+					LockSupport.parkNanos(this, remaining);
+				}
+				else {
+					LockSupport.park(this);
+				}
+
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+			}
+
+			return true;
+		}
+		finally {
+			waiters.remove(current);
+		}
+	}
+
+	/**
+	 * Returns whether there is no pending work. Since the completed count only
+	 * ever increases, work is always submitted before it is finished, and the
+	 * submitted count only decreases for rejected work that never reached a
+	 * worker, reading the completed count before the submitted count means the
+	 * two can only be equal if there really was a moment with no pending work.
+	 *
+	 * @return true if there is no pending work
+	 */
+	private boolean isFinished() {
+		long finished = completed.sum();
+		return submitted.sum() == finished;
+	}
+
+	/**
+	 * Returns an estimate of the number of work requests that have been
+	 * submitted but not yet finished.
+	 *
+	 * @return the estimated number of pending work requests
+	 */
+	public long pending() {
+		long finished = completed.sum();
+		return Math.max(0, submitted.sum() - finished);
+	}
+
+	/**
+	 * Increments the number of pending work requests.
+	 *
+	 * @param count the number of work requests added
+	 */
+	private void incrementPending(int count) {
+		submitted.add(count);
+	}
+
+	/**
+	 * Decrements the number of pending work requests, unparking any threads
+	 * waiting to finish when no work remains. Only pays for checking the total
+	 * if some thread is actually waiting.
+	 */
+	private void decrementPending() {
+		completed.increment();
+
+		// the increment is only a release write, so without a full fence the
+		// check for waiters below may be reordered before it and miss a waiter
+		// that registered after reading the old count
+		VarHandle.fullFence();
+		signalFinished();
+	}
+
+	/**
+	 * Removes work requests that were counted as submitted but rejected before
+	 * reaching a worker, unparking any threads waiting to finish when no work
+	 * remains.
+	 *
+	 * @param count the number of work requests removed
+	 */
+	private void decrementSubmitted(int count) {
+		submitted.add(-count);
+
+		// same as above, as no worker will ever finish the rejected work
+		VarHandle.fullFence();
+		signalFinished();
+	}
+
+	/**
+	 * Unparks any threads waiting to finish if no work remains. Only pays for
+	 * checking the total if some thread is actually waiting.
+	 */
+	private void signalFinished() {
+		if (!waiters.isEmpty() && isFinished()) {
+			for (Thread waiter : waiters) {
+				LockSupport.unpark(waiter);
+			}
+		}
+	}
+
+	/**
+	 * Asks the queue to shutdown. Any unprocessed work will not be finished, but
+	 * threads in-progress will not be interrupted.
+	 */
+	public void shutdown() {
+		// safe to do unsynchronized due to volatile keyword
+		shutdown = true;
+
+		log.debug("Work queue triggering shutdown...");
+		scheduler.wakeAll();
+	}
+	
+	/**
+	 * Asks the queue to shutdown immediately. Removes every work request that
+	 * has not started yet and interrupts the worker threads, so work requests
+	 * that respond to interrupts (such as by checking a
+	 * {@link CancellationToken}) stop early. The removed work requests are no
+	 * longer counted as submitted.
+	 *
+	 * @return the work requests that never started, in no particular order
+	 */
+	public List<Runnable> shutdownNow() {
+		shutdown = true;
+
+		List<Runnable> drained = new ArrayList<Runnable>();
+		scheduler.drain(drained);
+
+		for (int i = 0; i < drained.size(); i++) {
+			if (drained.get(i) instanceof Timed) {
+				// return the work request as it was submitted
+				drained.set(i, ((Timed) drained.get(i)).task);
+			}
+		}
+
+		if (!drained.isEmpty()) {
+			decrementSubmitted(drained.size());
+		}
+
+		log.debug("Work queue triggering immediate shutdown, removed {} work requests...", drained.size());
+		scheduler.wakeAll();
+
+		for (Worker worker : workers) {
+			worker.thread.interrupt();
+		}
+
+		return drained;
+	}
+
+	/**
+	 * Similar to {@link Thread#join()}, waits for all the work to be finished
+	 * and the worker threads to terminate. The work queue cannot be reused after
+	 * this call completes.
+	 */
+	public void join() {
+		try {
+			finish();
+			shutdown();
+
+			for (Worker worker : workers) {
+				worker.thread.join();
+			}
+			
+			log.debug("All worker threads terminated.");
+		}
+		catch (InterruptedException e) {
+			System.err.println("Warning: Work queue interrupted while joining.");
+			log.catching(Level.DEBUG, e);
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the number of worker threads being used by the work queue.
+	 *
+	 * @return number of worker threads
+	 */
+	public int size() {
+		return workers.length;
+	}
+
+	/**
+	 * Work to perform on a contiguous chunk of a range of values.
+	 *
+	 * @see WorkQueue#executeRange(int, int, RangeTask)
+	 */
+	@FunctionalInterface
+	public interface RangeTask {
+		/**
+		 * Performs work on the values from start to end (inclusive).
+		 *
+		 * @param start the first value in the chunk
+		 * @param end the last value in the chunk (inclusive)
+		 */
+		void run(int start, int end);
+	}
+
+	/**
+	 * Work that produces a result from a contiguous chunk of a range of values.
+	 *
+	 * @param <T> the type of result
+	 *
+	 * @see WorkQueue#invokeRange(int, int, RangeCallable)
+	 */
+	@FunctionalInterface
+	public interface RangeCallable<T> {
+		/**
+		 * Produces a result from the values from start to end (inclusive).
+		 *
+		 * @param start the first value in the chunk
+		 * @param end the last value in the chunk (inclusive)
+		 * @return the result for this chunk
+		 */
+		T call(int start, int end);
+	}
+
+	/**
+	 * Holds work requests until a worker thread is available to run them.
+	 */
+	private interface Scheduler {
+		/**
+		 * Adds a work request and wakes up a worker to run it if necessary.
+		 *
+		 * @param task work request
+		 * @param lane the lane for the priority of the work request
+		 * @return true if added, or false if there was no room
+		 */
+		boolean offer(Runnable task, int lane);
+
+		/**
+		 * Adds several work requests at once, waking up at most one worker per
+		 * work request. Stops at the first work request there is no room for.
+		 *
+		 * @param tasks work requests
+		 * @param lane the lane for the priority of the work requests
+		 * @return the number of work requests added, from the start
+		 */
+		int offerAll(Collection<? extends Runnable> tasks, int lane);
+
+		/**
+		 * Adds a work request, waiting for room if necessary.
+		 *
+		 * @param task work request
+		 * @param lane the lane for the priority of the work request
+		 * @return true if added, or false if a shutdown was requested first
+		 * @throws InterruptedException if interrupted while waiting
+		 */
+		default boolean put(Runnable task, int lane) throws InterruptedException {
+			return offer(task, lane);
+		}
+
+		/**
+		 * Waits until a work request is available for the worker and removes it,
+		 * checking the lanes in the order given by {@link Worker#lanes()}.
+		 *
+		 * @param worker the worker that will run the work request
+		 * @return the work request, or null if a shutdown has been requested
+		 * @throws InterruptedException if interrupted while waiting
+		 */
+		Runnable take(Worker worker) throws InterruptedException;
+
+		/**
+		 * Wakes up every waiting worker, so they may detect a shutdown.
+		 */
+		void wakeAll();
+
+		/**
+		 * Removes every pending work request.
+		 *
+		 * @param drained the list to add the removed work requests to
+		 */
+		void drain(List<Runnable> drained);
+	}
+
+	/**
+	 * Keeps every work request in a single set of lanes shared by all of the
+	 * workers, guarded by a single lock.
+	 */
+	private class SharedScheduler implements Scheduler {
+		/** Queue of pending work requests for each lane. */
+		private final LinkedList<Runnable>[] lanes;
+
+		/** Lock shared by every lane, also used to wait for work. */
+		private final Object queue;
+
+		/** Number of pending work requests in every lane. */
+		private int size;
+
+		/**
+		 * Initializes an empty queue for each lane.
+		 */
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		public SharedScheduler() {
+			this.lanes = new LinkedList[LANES];
+			this.queue = new Object();
+			this.size = 0;
+
+			for (int i = 0; i < LANES; i++) {
+				lanes[i] = new LinkedList<Runnable>();
+			}
+		}
+
+		@Override
+		public boolean offer(Runnable task, int lane) {
+			synchronized (queue) {
+				lanes[lane].addLast(task);
+				size++;
+				queue.notifyAll();
+			}
+
+			return true;
+		}
+
+		@Override
+		public int offerAll(Collection<? extends Runnable> tasks, int lane) {
+			synchronized (queue) {
+				lanes[lane].addAll(tasks);
+				size += tasks.size();
+
+				if (tasks.size() >= workers.length) {
+					queue.notifyAll();
+				}
+				else {
+					for (int i = 0; i < tasks.size(); i++) {
+						queue.notify();
+					}
+				}
+			}
+
+			return tasks.size();
+		}
+
+		@Override
+		public Runnable take(Worker worker) throws InterruptedException {
+			synchronized (queue) {
+				while (size == 0 && !shutdown) {
+					queue.wait();
+				}
+
+				// exit while for one of two reasons:
+				// (a) queue has work, or (b) shutdown has been called
+
+				if (shutdown) {
+					return null;
+				}
+
+				for (int lane : worker.lanes()) {
+					if (!lanes[lane].isEmpty()) {
+						size--;
+						return lanes[lane].removeFirst();
+					}
+				}
+
+				throw new IllegalStateException("Unable to find pending work in any lane.");
+			}
+		}
+
+		@Override
+		public void wakeAll() {
+			synchronized (queue) {
+				queue.notifyAll();
+			}
+		}
+
+		@Override
+		public void drain(List<Runnable> drained) {
+			synchronized (queue) {
+				for (LinkedList<Runnable> lane : lanes) {
+					drained.addAll(lane);
+					lane.clear();
+				}
+
+				size = 0;
+			}
+		}
+	}
+
+	/**
+	 * Gives each worker its own deque of work requests. Workers push and pop
+	 * their own work from the head of their deque, while idle workers steal
+	 * from the tail of other deques. Work submitted from outside the pool is
+	 * spread across the deques in round-robin order. Only one sleeping worker
+	 * is woken per work request, instead of every worker. Each lane has its own
+	 * set of deques, and a worker only steals from a lower priority lane once
+	 * every higher priority lane is empty.
+	 */
+	private class StealingScheduler implements Scheduler {
+		/** One deque of pending work requests per lane and worker. */
+		private final ConcurrentLinkedDeque<Runnable>[][] deques;
+
+		/** Workers that are parked (or about to park) waiting for work. */
+		private final ConcurrentLinkedQueue<Worker> sleeping;
+
+		/** Used to spread work submitted from outside the pool. */
+		private final AtomicInteger next;
+
+		/**
+		 * Initializes the deques for each worker.
+		 *
+		 * @param threads number of worker threads
+		 */
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		public StealingScheduler(int threads) {
+			this.deques = new ConcurrentLinkedDeque[LANES][threads];
+			this.sleeping = new ConcurrentLinkedQueue<Worker>();
+			this.next = new AtomicInteger();
+
+			for (int lane = 0; lane < LANES; lane++) {
+				for (int i = 0; i < threads; i++) {
+					deques[lane][i] = new ConcurrentLinkedDeque<Runnable>();
+				}
+			}
+		}
+
+		@Override
+		public boolean offer(Runnable task, int lane) {
+			if (isWorker()) {
+				// keep work created by a worker local to that worker
+				deques[lane][CURRENT.get().index].addFirst(task);
+			}
+			else {
+				int index = Math.floorMod(next.getAndIncrement(), workers.length);
+				deques[lane][index].addLast(task);
+			}
+
+			wake(1);
+			return true;
+		}
+
+		@Override
+		public int offerAll(Collection<? extends Runnable> tasks, int lane) {
+			// deal out contiguous blocks of work so each deque gets a similar share
+			int start = Math.floorMod(next.getAndAdd(tasks.size()), workers.length);
+			int block = (tasks.size() + workers.length - 1) / workers.length;
+			int i = 0;
+
+			for (Runnable task : tasks) {
+				deques[lane][(start + i / block) % workers.length].addLast(task);
+				i++;
+			}
+
+			wake(tasks.size());
+			return tasks.size();
+		}
+
+		/**
+		 * Wakes up to the specified number of sleeping workers. Entries for
+		 * workers that already woke up on their own are skipped without counting
+		 * them, so every unpark goes to a worker that is actually sleeping.
+		 *
+		 * @param count the maximum number of workers to wake
+		 */
+		private void wake(int count) {
+			int woken = 0;
+
+			while (woken < count) {
+				Worker sleeper = sleeping.poll();
+
+				if (sleeper == null) {
+					break;
+				}
+
+				if (sleeper.asleep.compareAndSet(true, false)) {
+					LockSupport.unpark(sleeper.thread);
+					woken++;
+				}
+			}
+		}
+
+		/**
+		 * Removes work from the worker's own deque, or steals work from another
+		 * worker's deque, checking each lane in turn.
+		 *
+		 * @param worker the worker looking for work
+		 * @return the work request, or null if none was found
+		 */
+		private Runnable poll(Worker worker) {
+			for (int lane : worker.lanes()) {
+				ConcurrentLinkedDeque<Runnable>[] lanes = deques[lane];
+				Runnable task = lanes[worker.index].pollFirst();
+
+				if (task == null) {
+					// start at a random victim to avoid every thief picking the same one
+					int start = ThreadLocalRandom.current().nextInt(lanes.length);
+
+					for (int i = 0; i < lanes.length && task == null; i++) {
+						task = lanes[(start + i) % lanes.length].pollLast();
+					}
+				}
+
+				if (task != null) {
+					return task;
+				}
+			}
+
+			return null;
+		}
+
+		@Override
+		public Runnable take(Worker worker) throws InterruptedException {
+			while (!shutdown) {
+				Runnable task = poll(worker);
 
-	/** Used to signal the queue should be shutdown. */
-	private volatile boolean shutdown;
+				if (task != null) {
+					return task;
+				}
 
-	/** The default number of threads to use when not specified. */
-	public static final int DEFAULT = 5;
+				// announce the intent to sleep before checking one last time, so any
+				// work offered after the check is guaranteed to wake this worker up;
+				// a worker that is still announced (after a spurious wakeup) is not
+				// added again, so each worker has at most one entry
+				if (worker.asleep.compareAndSet(false, true)) {
+					sleeping.add(worker);
+				}
 
-	/** Logger used for this class. */
-	private static final Logger log = LogManager.getLogger();
-	
-	/**
-	 * Starts a work queue with the default number of threads.
-	 *
-	 * @see #WorkQueue(int)
-	 */
-	public WorkQueue() {
-		this(DEFAULT);
-	}
+				task = poll(worker);
 
-	/**
-	 * Starts a work queue with the specified number of threads.
-	 *
-	 * @param threads number of worker threads; should be greater than 1
-	 */
-	public WorkQueue(int threads) {
-		this.queue = new LinkedList<Runnable>();
-		this.workers = new Worker[threads];
-		this.shutdown = false;
+				if (task != null) {
+					if (worker.asleep.compareAndSet(true, false)) {
+						sleeping.remove(worker);
+					}
 
-		// start the threads so they are waiting in the background
-		for (int i = 0; i < threads; i++) {
-			workers[i] = new Worker();
-			workers[i].start();
+					return task;
+				}
+
+				if (shutdown) {
+					break;
+				}
+
+				LockSupport.park(this);
+
+				if (Thread.interrupted()) {
+					if (worker.asleep.compareAndSet(true, false)) {
+						sleeping.remove(worker);
+					}
+
+					throw new InterruptedException();
+				}
+			}
+
+			return null;
 		}
-		
-		log.debug("Work queue initialized with {} worker threads.", workers.length);
-	}
 
-	/**
-	 * Adds a work request to the queue. A thread will process this request when
-	 * available.
-	 *
-	 * @param task work request (in the form of a {@link Runnable} object)
-	 */
-	public void execute(Runnable task) {
-		synchronized (queue) {
-			queue.addLast(task);
-			queue.notifyAll();
+		@Override
+		public void wakeAll() {
+			for (Worker worker : workers) {
+				LockSupport.unpark(worker.thread);
+			}
+		}
+
+		@Override
+		public void drain(List<Runnable> drained) {
+			for (ConcurrentLinkedDeque<Runnable>[] lane : deques) {
+				for (ConcurrentLinkedDeque<Runnable> deque : lane) {
+					Runnable task = deque.pollFirst();
+
+					while (task != null) {
+						drained.add(task);
+						task = deque.pollFirst();
+					}
+				}
+			}
 		}
-	}
-	
-	/**
-	 * Waits for all pending work to be finished. Does not terminate the worker
-	 * threads so that the work queue can continue to be used.
-	 */
-	public void finish() {
-		// TODO Fix this method implementation.
-		throw new UnsupportedOperationException("Not yet implemented.");
 	}
 
 	/**
-	 * Asks the queue to shutdown. Any unprocessed work will not be finished, but
-	 * threads in-progress will not be interrupted.
+	 * Keeps a fixed number of work requests in one ring buffer per lane, shared
+	 * by all of the workers and guarded by a single lock. The buffers are
+	 * allocated once, so adding and removing work requests never allocates.
+	 * Waiting threads are only notified if some thread is actually waiting.
 	 */
-	public void shutdown() {
-		// safe to do unsynchronized due to volatile keyword
-		shutdown = true;
+	private class BoundedScheduler implements Scheduler {
+		/** Ring buffer of pending work requests for each lane. */
+		private final Runnable[][] rings;
 
-		log.debug("Work queue triggering shutdown...");
-		synchronized (queue) {
-			queue.notifyAll();
+		/** Index of the oldest work request in each ring buffer. */
+		private final int[] heads;
+
+		/** Number of work requests in each ring buffer. */
+		private final int[] counts;
+
+		/** Lock shared by every lane, also used to wait for work or room. */
+		private final Object lock;
+
+		/** The maximum number of pending work requests in every lane. */
+		private final int capacity;
+
+		/** Number of pending work requests in every lane. */
+		private int size;
+
+		/** Number of workers waiting for work. */
+		private int idle;
+
+		/** Number of producers waiting for room. */
+		private int blocked;
+
+		/**
+		 * Initializes the ring buffers for each lane. Each ring buffer can hold
+		 * the full capacity, so any mix of priorities fits.
+		 *
+		 * @param capacity the maximum number of pending work requests
+		 */
+		public BoundedScheduler(int capacity) {
+			this.rings = new Runnable[LANES][capacity];
+			this.heads = new int[LANES];
+			this.counts = new int[LANES];
+			this.lock = new Object();
+			this.capacity = capacity;
+			this.size = 0;
+			this.idle = 0;
+			this.blocked = 0;
+		}
+
+		/**
+		 * Adds a work request to the end of a ring buffer. Must be called while
+		 * holding the lock and only if there is room.
+		 *
+		 * @param task work request
+		 * @param lane the lane for the priority of the work request
+		 */
+		private void add(Runnable task, int lane) {
+			int tail = heads[lane] + counts[lane];
+			rings[lane][tail < capacity ? tail : tail - capacity] = task;
+			counts[lane]++;
+			size++;
+		}
+
+		@Override
+		public boolean offer(Runnable task, int lane) {
+			synchronized (lock) {
+				if (size == capacity) {
+					return false;
+				}
+
+				add(task, lane);
+
+				if (idle > 0) {
+					lock.notifyAll();
+				}
+
+				return true;
+			}
+		}
+
+		@Override
+		public int offerAll(Collection<? extends Runnable> tasks, int lane) {
+			int added = 0;
+
+			synchronized (lock) {
+				for (Runnable task : tasks) {
+					if (size == capacity) {
+						break;
+					}
+
+					add(task, lane);
+					added++;
+				}
+
+				if (added > 0 && idle > 0) {
+					lock.notifyAll();
+				}
+			}
+
+			return added;
+		}
+
+		@Override
+		public boolean put(Runnable task, int lane) throws InterruptedException {
+			synchronized (lock) {
+				while (size == capacity && !shutdown) {
+					blocked++;
+
+					try {
+						lock.wait();
+					}
+					finally {
+						blocked--;
+					}
+				}
+
+				if (shutdown) {
+					return false;
+				}
+
+				add(task, lane);
+
+				if (idle > 0) {
+					lock.notifyAll();
+				}
+
+				return true;
+			}
+		}
+
+		@Override
+		public Runnable take(Worker worker) throws InterruptedException {
+			synchronized (lock) {
+				while (size == 0 && !shutdown) {
+					idle++;
+
+					try {
+						lock.wait();
+					}
+					finally {
+						idle--;
+					}
+				}
+
+				if (shutdown) {
+					return null;
+				}
+
+				for (int lane : worker.lanes()) {
+					if (counts[lane] > 0) {
+						int head = heads[lane];
+						Runnable task = rings[lane][head];
+
+						// clear the slot so the finished work can be garbage collected
+						rings[lane][head] = null;
+						heads[lane] = head + 1 < capacity ? head + 1 : 0;
+						counts[lane]--;
+						size--;
+
+						if (blocked > 0) {
+							lock.notifyAll();
+						}
+
+						return task;
+					}
+				}
+
+				throw new IllegalStateException("Unable to find pending work in any lane.");
+			}
+		}
+
+		@Override
+		public void wakeAll() {
+			synchronized (lock) {
+				lock.notifyAll();
+			}
+		}
+
+		@Override
+		public void drain(List<Runnable> drained) {
+			synchronized (lock) {
+				for (int lane = 0; lane < LANES; lane++) {
+					for (int i = 0; i < counts[lane]; i++) {
+						int index = heads[lane] + i < capacity ? heads[lane] + i : heads[lane] + i - capacity;
+						drained.add(rings[lane][index]);
+						rings[lane][index] = null;
+					}
+
+					heads[lane] = 0;
+					counts[lane] = 0;
+				}
+
+				size = 0;
+				lock.notifyAll();
+			}
 		}
 	}
-	
+
 	/**
-	 * Similar to {@link Thread#join()}, waits for all the work to be finished
-	 * and the worker threads to terminate. The work queue cannot be reused after
-	 * this call completes.
+	 * Live, read-only view of the metrics collected by a work queue. Counts and
+	 * times are updated without locking, so values read together may be very
+	 * slightly out of sync with each other while work is running.
 	 */
-	public void join() {
-		try {
-			finish();
-			shutdown();
+	public class Metrics {
+		/**
+		 * Returns the number of work requests submitted.
+		 *
+		 * @return number of work requests submitted
+		 */
+		public long submitted() {
+			return submitted.sum();
+		}
+
+		/**
+		 * Returns the number of work requests finished, whether or not they
+		 * finished successfully.
+		 *
+		 * @return number of work requests finished
+		 */
+		public long completed() {
+			return completed.sum();
+		}
+
+		/**
+		 * Returns the number of work requests that threw an exception. Does not
+		 * include exceptions captured by futures from {@link #submit(Callable)}.
+		 *
+		 * @return number of work requests that failed
+		 */
+		public long failed() {
+			return failed.sum();
+		}
+
+		/**
+		 * Returns the number of work requests rejected because the queue was
+		 * full. Rejected work requests are not counted as submitted.
+		 *
+		 * @return number of work requests rejected
+		 * @see Overflow#REJECT
+		 */
+		public long rejected() {
+			return rejected.sum();
+		}
+
+		/**
+		 * Returns an estimate of the number of work requests waiting in the queue
+		 * that have not started running yet.
+		 *
+		 * @return the estimated queue depth
+		 */
+		public long queueDepth() {
+			long active = 0;
 
 			for (Worker worker : workers) {
-				worker.join();
+				active += worker.active ? 1 : 0;
 			}
-			
-			log.debug("All worker threads terminated.");
+
+			return Math.max(0, pending() - active);
 		}
-		catch (InterruptedException e) {
-			System.err.println("Warning: Work queue interrupted while joining.");
-			log.catching(Level.DEBUG, e);
-			Thread.currentThread().interrupt();
+
+		/**
+		 * Returns the number of worker threads.
+		 *
+		 * @return number of worker threads
+		 */
+		public int workers() {
+			return workers.length;
+		}
+
+		/**
+		 * Returns the total time (in nanoseconds) the worker has spent running
+		 * work requests.
+		 *
+		 * @param worker the index of the worker
+		 * @return the busy time in nanoseconds
+		 */
+		public long busyTime(int worker) {
+			return workers[worker].busy;
+		}
+
+		/**
+		 * Returns the total time (in nanoseconds) the worker has spent waiting for
+		 * work requests.
+		 *
+		 * @param worker the index of the worker
+		 * @return the idle time in nanoseconds
+		 */
+		public long idleTime(int worker) {
+			return workers[worker].idle;
+		}
+
+		/**
+		 * Returns the histogram of time (in nanoseconds) sampled work requests
+		 * spent waiting in the queue before running.
+		 *
+		 * @return the queue wait time histogram
+		 * @see WorkQueue#WAIT_SAMPLE_RATE
+		 */
+		public LatencyHistogram queueWait() {
+			return queueWait;
+		}
+
+		/**
+		 * Returns the histogram of time (in nanoseconds) sampled work requests of
+		 * the given priority spent waiting in the queue before running.
+		 *
+		 * @param priority the priority of the work requests
+		 * @return the queue wait time histogram for that priority
+		 * @see WorkQueue#WAIT_SAMPLE_RATE
+		 */
+		public LatencyHistogram queueWait(Priority priority) {
+			return laneWait[priority.ordinal()];
+		}
+
+		/**
+		 * Returns the histogram of time (in nanoseconds) work requests spent
+		 * running.
+		 *
+		 * @return the run time histogram
+		 */
+		public LatencyHistogram runTime() {
+			return runTime;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append(String.format("submitted=%d, completed=%d, failed=%d, rejected=%d, depth=%d%n",
+					submitted(), completed(), failed(), rejected(), queueDepth()));
+
+			for (int i = 0; i < workers.length; i++) {
+				builder.append(String.format("worker %d: busy=%dms, idle=%dms%n", i,
+						busyTime(i) / 1_000_000, idleTime(i) / 1_000_000));
+			}
+
+			builder.append("queue wait: ").append(queueWait).append(System.lineSeparator());
+			builder.append("run time: ").append(runTime);
+			return builder.toString();
 		}
 	}
 
 	/**
-	 * Returns the number of worker threads being used by the work queue.
-	 *
-	 * @return number of worker threads
+	 * Wraps a work request to record how long it waited in the queue.
 	 */
-	public int size() {
-		return workers.length;
+	private class Timed implements Runnable {
+		/** The wrapped work request. */
+		private final Runnable task;
+
+		/** The wait time histogram for the priority of the work request. */
+		private final LatencyHistogram lane;
+
+		/** When the work request was added to the queue. */
+		private final long queued;
+
+		/**
+		 * Wraps the work request, marking the current time as when it was queued.
+		 *
+		 * @param task the work request to wrap
+		 * @param lane the wait time histogram for the priority of the request
+		 */
+		public Timed(Runnable task, LatencyHistogram lane) {
+			this.task = task;
+			this.lane = lane;
+			this.queued = System.nanoTime();
+		}
+
+		@Override
+		public void run() {
+			long waited = System.nanoTime() - queued;
+			queueWait.record(waited);
+			lane.record(waited);
+			task.run();
+		}
 	}
 
 	/**
@@ -143,53 +1843,122 @@ public class WorkQueue {
 	 * exit instead of grabbing new work from the queue. These threads will
 	 * continue running in the background until a shutdown is requested.
 	 */
-	private class Worker extends Thread {
+	private class Worker implements Runnable {
+		/** The index of this worker within the pool. */
+		private final int index;
+
+		/** The (platform or virtual) thread running this worker. */
+		private final Thread thread;
+
+		/** Whether this worker is running a work request. */
+		private volatile boolean active;
+
+		/** Total time (in nanoseconds) spent running work requests. */
+		private volatile long busy;
+
+		/** Total time (in nanoseconds) spent waiting for work requests. */
+		private volatile long idle;
+
+		/** Number of work requests run by this worker. */
+		private long runs;
+
+		/** Number of times this worker has looked for work. */
+		private int turns;
+
+		/** Whether this worker is announced as sleeping (stealing scheduler only). */
+		private final AtomicBoolean asleep;
+
+		/**
+		 * Initializes a worker and the thread that will run it.
+		 *
+		 * @param index the index of this worker within the pool
+		 * @param factory used to create the worker thread
+		 */
+		public Worker(int index, ThreadFactory factory) {
+			this.index = index;
+			this.thread = factory.newThread(this);
+			this.asleep = new AtomicBoolean(false);
+		}
+
+		/**
+		 * Returns the work queue this worker belongs to.
+		 *
+		 * @return the work queue
+		 */
+		public WorkQueue owner() {
+			return WorkQueue.this;
+		}
+
 		/**
-		 * Initializes a worker thread with a custom name.
+		 * Returns the order this worker should check the lanes in the next time
+		 * it looks for work. Usually the lanes are checked from highest to lowest
+		 * priority, but once every {@link #FAIRNESS_INTERVAL} turns the order is
+		 * reversed so lower priority work cannot be starved. Only ever called by
+		 * this worker's own thread.
+		 *
+		 * @return the indices of the lanes in the order to check them
 		 */
-		public Worker() {
-			setName("Worker" + getName());
+		public int[] lanes() {
+			return ++turns % FAIRNESS_INTERVAL == 0 ? LOWEST_FIRST : HIGHEST_FIRST;
 		}
 
 		@Override
 		public void run() {
 			Runnable task = null;
+			CURRENT.set(this);
+
+			// only this worker updates its own times, so no locking is needed
+			long mark = System.nanoTime();
 
 			try {
 				while (true) {
-					synchronized (queue) {
-						while (queue.isEmpty() && !shutdown) {
-							log.debug("Work queue worker waiting...");
-							queue.wait();
-						}
+					task = scheduler.take(this);
 
-						// exit while for one of two reasons:
-						// (a) queue has work, or (b) shutdown has been called
-	
-						if (shutdown) {
-							log.debug("Worker detected shutdown...");
-							break;
-						}
-						else {
-							task = queue.removeFirst();
-						}
+					long start = System.nanoTime();
+					idle += start - mark;
+
+					if (task == null) {
+						log.debug("Worker detected shutdown...");
+						break;
 					}
 
 					try {
-						log.debug("Work queue worker found work.");
+						active = true;
 						task.run();
 					}
+					catch (CancellationException e) {
+						// cancelled work stops early on purpose, so it is not a failure
+						log.debug("Worker {} stopped cancelled work.", index);
+					}
 					catch (RuntimeException e) {
 						// catch runtime exceptions to avoid leaking threads
 						System.err.println("Warning: Work queue encountered an exception while running.");
 						log.catching(Level.DEBUG, e);
+						failed.increment();
+					}
+					finally {
+						mark = System.nanoTime();
+						busy += mark - start;
+						runTime.record(mark - start);
+						active = false;
+						decrementPending();
+					}
+
+					// aggregate instead of logging (and locking the appender) per request
+					if (++runs % TRACE_INTERVAL == 0 && log.isTraceEnabled()) {
+						log.trace("Worker {} ran {} work requests: busy {}ms, idle {}ms.",
+								index, runs, busy / 1_000_000, idle / 1_000_000);
 					}
 				}
 				
 				log.debug("Worker thread terminating...");
 			}
 			catch (InterruptedException e) {
-				System.err.println("Warning: Worker thread interrupted while waiting.");
+				// workers are interrupted on purpose by shutdownNow()
+				if (!shutdown) {
+					System.err.println("Warning: Worker thread interrupted while waiting.");
+				}
+
 				log.catching(Level.DEBUG, e);
 				Thread.currentThread().interrupt();
 			}
@@ -235,6 +2004,9 @@ public class WorkQueue {
 		
 		// peek at the threads after shutdown and join
 		System.out.println("Estimated active threads after join(): " + activeThreads.get());
+
+		// peek at what the work queue measured
+		System.out.println(demo.metrics());
 		
 		/*
 		 * The thread named "main" runs the main method.
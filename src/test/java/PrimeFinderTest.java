@@ -4,13 +4,25 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
@@ -24,6 +36,7 @@ import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.platform.engine.discovery.DiscoverySelectors;
 import org.junit.platform.launcher.TagFilter;
 import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
@@ -134,6 +147,26 @@ public class PrimeFinderTest {
 				Assertions.assertEquals(expected, actual);
 			});
 		}
+
+		/**
+		 * Test every engine returns the same results, including small edge cases.
+		 *
+		 * @see PrimeFinder#findPrimes(int, int, PrimeFinder.Engine)
+		 */
+		@Test
+		@Order(3)
+		public void testEngines() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				for (PrimeFinder.Engine engine : PrimeFinder.Engine.values()) {
+					for (int max : new int[] { Integer.MIN_VALUE, -1, 0, 1, 2, 3, 4, 1000, 3000 }) {
+						for (int threads : new int[] { 1, 3 }) {
+							String debug = engine + ", max = " + max + ", threads = " + threads;
+							Assertions.assertEquals(PrimeFinder.trialDivision(max), PrimeFinder.findPrimes(max, threads, engine), debug);
+						}
+					}
+				}
+			});
+		}
 	}
 
 	/**
@@ -266,6 +299,545 @@ public class PrimeFinderTest {
 				Assertions.assertEquals(start, end);
 			});
 		}
+
+		/**
+		 * Verifies every scheduling mode runs all of the work, including work
+		 * submitted by the worker threads themselves.
+		 */
+		@Test
+		@Order(3)
+		public void testScheduling() {
+			int tasks = 1000;
+			int subtasks = 10;
+
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				for (WorkQueue.Scheduling scheduling : WorkQueue.Scheduling.values()) {
+					WorkQueue queue = new WorkQueue(3, scheduling);
+					AtomicInteger count = new AtomicInteger();
+
+					for (int i = 0; i < tasks; i++) {
+						queue.execute(() -> {
+							for (int j = 0; j < subtasks; j++) {
+								queue.execute(count::incrementAndGet);
+							}
+						});
+					}
+
+					queue.join();
+					Assertions.assertEquals(tasks * subtasks, count.get(), scheduling.toString());
+				}
+			});
+		}
+
+		/**
+		 * Verifies batched and range submissions run every task and cover every
+		 * value in the range exactly once.
+		 */
+		@Test
+		@Order(4)
+		public void testBatchedSubmission() {
+			int max = 10007;
+
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				for (WorkQueue.Scheduling scheduling : WorkQueue.Scheduling.values()) {
+					WorkQueue queue = new WorkQueue(3, scheduling);
+					AtomicInteger count = new AtomicInteger();
+					AtomicLong sum = new AtomicLong();
+
+					queue.executeAll(Collections.nCopies(max, count::incrementAndGet));
+					queue.executeRange(1, max, (start, end) -> {
+						for (int i = start; i <= end; i++) {
+							sum.addAndGet(i);
+						}
+					});
+
+					queue.join();
+					Assertions.assertEquals(max, count.get(), scheduling.toString());
+					Assertions.assertEquals((long) max * (max + 1) / 2, sum.get(), scheduling.toString());
+				}
+			});
+		}
+
+		/**
+		 * Verifies the timed finish gives up when work is still pending, and
+		 * succeeds once the work is done.
+		 */
+		@Test
+		@Order(5)
+		public void testTimedFinish() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				WorkQueue queue = new WorkQueue(1);
+				CountDownLatch latch = new CountDownLatch(1);
+
+				queue.execute(() -> {
+					try {
+						latch.await();
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+
+				Assertions.assertFalse(queue.finish(Duration.ofMillis(50)));
+				Assertions.assertEquals(1, queue.pending());
+
+				latch.countDown();
+				Assertions.assertTrue(queue.finish(Duration.ofSeconds(10)));
+				Assertions.assertEquals(0, queue.pending());
+				queue.join();
+			});
+		}
+
+		/**
+		 * Verifies results are returned in order, including when a worker waits on
+		 * results from its own single-threaded queue.
+		 */
+		@Test
+		@Order(6)
+		public void testSubmitAndInvoke() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				WorkQueue queue = new WorkQueue(1);
+
+				Assertions.assertEquals(42, queue.submit(() -> 42).get());
+				Assertions.assertEquals(List.of(1, 2, 3), queue.invokeAll(List.of(() -> 1, () -> 2, () -> 3)));
+
+				// the only worker must help run the nested work or it will deadlock
+				Future<List<Integer>> nested = queue.submit(() -> queue.invokeRange(1, 10, (start, end) -> end - start + 1));
+				Assertions.assertEquals(10, nested.get().stream().mapToInt(Integer::intValue).sum());
+
+				queue.join();
+			});
+		}
+
+		/**
+		 * Verifies the processor-sized and virtual thread queues run all of the
+		 * work, including blocking work.
+		 */
+		@Test
+		@Order(7)
+		public void testThreadModes() {
+			int tasks = 200;
+
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				WorkQueue sized = WorkQueue.forProcessors();
+				Assertions.assertEquals(Runtime.getRuntime().availableProcessors(), sized.size());
+				sized.join();
+
+				WorkQueue virtual = WorkQueue.virtual(tasks);
+				CountDownLatch count = new CountDownLatch(tasks);
+
+				for (int i = 0; i < tasks; i++) {
+					virtual.execute(() -> {
+						try {
+							Thread.sleep(10);
+							count.countDown();
+						}
+						catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					});
+				}
+
+				virtual.join();
+				Assertions.assertEquals(0, count.getCount());
+			});
+		}
+
+		/**
+		 * Verifies the work queue metrics count every work request, and the
+		 * histograms estimate percentiles within their expected precision.
+		 */
+		@Test
+		@Order(8)
+		public void testMetrics() {
+			int tasks = 100;
+			int failures = 5;
+
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				WorkQueue queue = new WorkQueue(2);
+
+				for (int i = 0; i < tasks; i++) {
+					boolean fail = i < failures;
+
+					queue.execute(() -> {
+						if (fail) {
+							throw new IllegalStateException("Expected failure for testing.");
+						}
+					});
+				}
+
+				queue.finish();
+
+				WorkQueue.Metrics metrics = queue.metrics();
+				Assertions.assertEquals(tasks, metrics.submitted());
+				Assertions.assertEquals(tasks, metrics.completed());
+				Assertions.assertEquals(failures, metrics.failed());
+				Assertions.assertEquals(0, metrics.queueDepth());
+				Assertions.assertEquals(tasks, metrics.runTime().count());
+				Assertions.assertTrue(metrics.busyTime(0) + metrics.busyTime(1) > 0);
+				queue.join();
+
+				LatencyHistogram histogram = new LatencyHistogram();
+
+				for (int i = 1; i <= 1000; i++) {
+					histogram.record(i);
+				}
+
+				Assertions.assertEquals(1000, histogram.count());
+				Assertions.assertEquals(1000, histogram.max());
+				Assertions.assertEquals(500, histogram.percentile(50), 500 * 0.07);
+				Assertions.assertEquals(990, histogram.percentile(99), 990 * 0.07);
+			});
+		}
+
+		/**
+		 * Verifies cost-weighted range submissions cover every value in the range
+		 * exactly once, and split the estimated cost evenly between chunks.
+		 */
+		@Test
+		@Order(9)
+		public void testWeightedRange() {
+			int max = 10007;
+			int workers = 3;
+
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				WorkQueue queue = new WorkQueue(workers);
+				List<int[]> chunks = queue.invokeRange(1, max, (start, end) -> new int[] { start, end },
+						value -> (double) value * value);
+				queue.join();
+
+				int chunkCount = workers * WorkQueue.CHUNKS_PER_WORKER;
+				double share = (double) max * max / chunkCount;
+				int next = 1;
+
+				Assertions.assertEquals(chunkCount, chunks.size());
+
+				for (int[] chunk : chunks) {
+					Assertions.assertEquals(next, chunk[0]);
+					Assertions.assertTrue(chunk[1] >= chunk[0]);
+
+					double cost = (double) chunk[1] * chunk[1] - (double) (chunk[0] - 1) * (chunk[0] - 1);
+					Assertions.assertEquals(share, cost, share * 0.01, Arrays.toString(chunk));
+					next = chunk[1] + 1;
+				}
+
+				Assertions.assertEquals(max + 1, next);
+
+				// a range where all of the cost is in the last value still works
+				WorkQueue skewed = new WorkQueue(workers);
+				List<Integer> sizes = skewed.invokeRange(1, 100, (start, end) -> end - start + 1,
+						value -> value == 100 ? 1 : 0);
+				skewed.join();
+
+				Assertions.assertEquals(100, sizes.stream().mapToInt(Integer::intValue).sum());
+
+				// a range with negative values is split the same way
+				WorkQueue negative = new WorkQueue(workers);
+				List<int[]> signed = negative.invokeRange(-100, 100, (start, end) -> new int[] { start, end },
+						value -> value + 101.0);
+				negative.join();
+
+				next = -100;
+
+				for (int[] chunk : signed) {
+					Assertions.assertEquals(next, chunk[0]);
+					Assertions.assertEquals(201.0 / chunkCount, chunk[1] - chunk[0] + 1, 1.0, Arrays.toString(chunk));
+					next = chunk[1] + 1;
+				}
+
+				Assertions.assertEquals(101, next);
+			});
+		}
+
+		/**
+		 * Verifies waiting work runs from highest to lowest priority, and that a
+		 * steady stream of interactive work does not starve bulk work.
+		 */
+		@Test
+		@Order(10)
+		public void testPriorities() {
+			int tasks = 5;
+			int flood = WorkQueue.FAIRNESS_INTERVAL * 2;
+
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				for (WorkQueue.Scheduling scheduling : WorkQueue.Scheduling.values()) {
+					// a single worker is kept busy until every request is queued
+					WorkQueue queue = new WorkQueue(1, scheduling);
+					CountDownLatch latch = new CountDownLatch(1);
+					List<WorkQueue.Priority> order = Collections.synchronizedList(new ArrayList<>());
+
+					queue.execute(() -> {
+						try {
+							latch.await();
+						}
+						catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					});
+
+					for (int i = tasks - 1; i >= 0; i--) {
+						for (WorkQueue.Priority priority : WorkQueue.Priority.values()) {
+							if (priority.ordinal() <= i) {
+								queue.execute(() -> order.add(priority), priority);
+							}
+						}
+					}
+
+					latch.countDown();
+					queue.finish();
+
+					List<WorkQueue.Priority> sorted = new ArrayList<>(order);
+					Collections.sort(sorted);
+					Assertions.assertEquals(sorted, order, scheduling.toString());
+
+					// the bulk request must run before the flood of interactive requests ends
+					CountDownLatch blocked = new CountDownLatch(1);
+					List<WorkQueue.Priority> flooded = Collections.synchronizedList(new ArrayList<>());
+
+					queue.execute(() -> {
+						try {
+							blocked.await();
+						}
+						catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					});
+
+					queue.execute(() -> flooded.add(WorkQueue.Priority.BULK), WorkQueue.Priority.BULK);
+
+					for (int i = 0; i < flood; i++) {
+						queue.execute(() -> flooded.add(WorkQueue.Priority.INTERACTIVE), WorkQueue.Priority.INTERACTIVE);
+					}
+
+					blocked.countDown();
+					queue.join();
+
+					Assertions.assertEquals(flood + 1, flooded.size(), scheduling.toString());
+					Assertions.assertTrue(flooded.indexOf(WorkQueue.Priority.BULK) < flood, scheduling.toString());
+				}
+			});
+		}
+
+		/**
+		 * Verifies a bounded queue runs all of the work when it blocks, runs work
+		 * on the caller or rejects work once full, and never deadlocks when its
+		 * own workers submit more work than fits.
+		 */
+		@Test
+		@Order(11)
+		public void testBoundedQueue() {
+			int tasks = 1000;
+			int capacity = 2;
+
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				WorkQueue blocking = new WorkQueue(2, capacity, WorkQueue.Overflow.BLOCK);
+				AtomicInteger count = new AtomicInteger();
+
+				for (int i = 0; i < tasks; i++) {
+					blocking.execute(count::incrementAndGet);
+				}
+
+				// a single worker must run the nested work itself instead of blocking
+				WorkQueue nested = new WorkQueue(1, 1, WorkQueue.Overflow.BLOCK);
+				nested.execute(() -> {
+					for (int i = 0; i < tasks; i++) {
+						nested.execute(count::incrementAndGet);
+					}
+				});
+
+				blocking.join();
+				nested.join();
+				Assertions.assertEquals(tasks * 2, count.get());
+				Assertions.assertEquals(0, blocking.metrics().rejected());
+
+				// the only worker waits on the latch so the queue fills up
+				for (WorkQueue.Overflow overflow : List.of(WorkQueue.Overflow.CALLER_RUNS, WorkQueue.Overflow.REJECT)) {
+					WorkQueue queue = new WorkQueue(1, capacity, overflow);
+					CountDownLatch latch = new CountDownLatch(1);
+					AtomicInteger callers = new AtomicInteger();
+					AtomicInteger ran = new AtomicInteger();
+					Thread caller = Thread.currentThread();
+
+					queue.execute(() -> {
+						try {
+							latch.await();
+						}
+						catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					});
+
+					// make sure the worker took the latch task before filling the queue
+					while (queue.metrics().queueDepth() > 0) {
+						Thread.onSpinWait();
+					}
+
+					Runnable task = () -> {
+						ran.incrementAndGet();
+
+						if (Thread.currentThread() == caller) {
+							callers.incrementAndGet();
+						}
+					};
+
+					for (int i = 0; i < capacity; i++) {
+						queue.execute(task);
+					}
+
+					if (overflow == WorkQueue.Overflow.CALLER_RUNS) {
+						queue.execute(task);
+						queue.executeAll(List.of(task, task));
+						Assertions.assertEquals(3, callers.get());
+					}
+					else {
+						Assertions.assertThrows(RejectedExecutionException.class, () -> queue.execute(task));
+						Assertions.assertThrows(RejectedExecutionException.class, () -> queue.executeAll(List.of(task, task)));
+						Assertions.assertEquals(3, queue.metrics().rejected());
+						Assertions.assertEquals(capacity + 1, queue.metrics().submitted());
+					}
+
+					latch.countDown();
+					queue.join();
+
+					Assertions.assertEquals(0, queue.pending(), overflow.toString());
+					Assertions.assertEquals(overflow == WorkQueue.Overflow.REJECT ? capacity : capacity + 3, ran.get());
+				}
+			});
+
+			Assertions.assertThrows(IllegalArgumentException.class, () -> new WorkQueue(1, 0, WorkQueue.Overflow.BLOCK));
+		}
+
+		/**
+		 * Verifies shutting down immediately returns the work that never started
+		 * and interrupts the work that is running, for every kind of queue.
+		 */
+		@Test
+		@Order(12)
+		public void testShutdownNow() {
+			int tasks = 5;
+
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				List<WorkQueue> queues = List.of(new WorkQueue(1, WorkQueue.Scheduling.SHARED),
+						new WorkQueue(1, WorkQueue.Scheduling.STEALING), new WorkQueue(1, tasks, WorkQueue.Overflow.BLOCK));
+
+				for (WorkQueue queue : queues) {
+					CountDownLatch started = new CountDownLatch(1);
+					AtomicInteger interrupted = new AtomicInteger();
+					AtomicInteger ran = new AtomicInteger();
+					List<Runnable> waiting = new ArrayList<>();
+
+					queue.execute(() -> {
+						started.countDown();
+
+						try {
+							Thread.sleep(GLOBAL_TIMEOUT.toMillis());
+						}
+						catch (InterruptedException e) {
+							interrupted.incrementAndGet();
+						}
+					});
+
+					started.await();
+
+					for (int i = 0; i < tasks; i++) {
+						int value = i;
+						waiting.add(() -> ran.addAndGet(value));
+						queue.execute(waiting.get(i), WorkQueue.Priority.values()[i % 3]);
+					}
+
+					List<Runnable> drained = queue.shutdownNow();
+					queue.join();
+
+					Assertions.assertEquals(tasks, drained.size());
+					Assertions.assertTrue(drained.containsAll(waiting));
+					Assertions.assertEquals(1, interrupted.get());
+					Assertions.assertEquals(0, ran.get());
+					Assertions.assertEquals(0, queue.pending());
+				}
+			});
+		}
+
+		/**
+		 * Verifies a cancelled job stops quickly without affecting other jobs,
+		 * and jobs cancelled before they start never run.
+		 */
+		@Test
+		@Order(13)
+		public void testCancellation() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				CancellationToken token = new CancellationToken();
+				AtomicInteger cancelled = new AtomicInteger();
+
+				// far too large to finish before being cancelled
+				Thread job = new Thread(() -> {
+					try {
+						PrimeFinder.findPrimes(10_000_000, 3, token);
+					}
+					catch (CancellationException e) {
+						cancelled.incrementAndGet();
+					}
+				});
+
+				job.start();
+				Thread.sleep(100);
+
+				Assertions.assertEquals(PrimeFinder.trialDivision(1000), PrimeFinder.findPrimes(1000, 3, new CancellationToken()));
+
+				Instant start = Instant.now();
+				token.cancel();
+				job.join();
+
+				Duration elapsed = Duration.between(start, Instant.now());
+				Assertions.assertEquals(1, cancelled.get());
+				Assertions.assertTrue(elapsed.toMillis() < 1000, elapsed.toString());
+
+				CancellationToken early = new CancellationToken();
+				early.cancel();
+
+				Assertions.assertTrue(early.isCancelled());
+				Assertions.assertThrows(CancellationException.class, () -> PrimeFinder.countPrimes(0, 1L << 32, 3, early));
+				Assertions.assertThrows(CancellationException.class, () -> PrimeFinder.forEachPrime(1L << 40, (1L << 40) + 100_000_000, 3, early, prime -> {
+					Assertions.fail("Cancelled job found a prime.");
+				}));
+			});
+		}
+
+		/**
+		 * Verifies an interrupted job throws instead of returning partial results,
+		 * and a batch with a failed segment is never passed to the action.
+		 */
+		@Test
+		@Order(14)
+		public void testFailedJobs() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				Thread.currentThread().interrupt();
+
+				try {
+					Assertions.assertThrows(CancellationException.class, () -> PrimeFinder.findPrimes(10_000_000, 3, new CancellationToken()));
+				}
+				finally {
+					Thread.interrupted();
+				}
+
+				// only fails on the worker threads, so the caller never notices itself
+				Thread caller = Thread.currentThread();
+				CancellationToken broken = new CancellationToken() {
+					@Override
+					public void check() {
+						if (Thread.currentThread() != caller) {
+							throw new IllegalStateException("Segment failed.");
+						}
+					}
+				};
+
+				IllegalStateException e = Assertions.assertThrows(IllegalStateException.class,
+						() -> PrimeFinder.forEachPrime(1000, 100_000_000, 3, broken, prime -> {
+							Assertions.fail("Failed batch passed to the action.");
+						}));
+
+				Assertions.assertEquals("Segment failed.", e.getCause().getMessage());
+			});
+		}
 	}
 
 	/**
@@ -343,6 +915,872 @@ public class PrimeFinderTest {
 		}
 	}
 
+	/**
+	 * Tests the segmented sieve returns the same results as trial division.
+	 */
+	@Nested
+	@TestMethodOrder(OrderAnnotation.class)
+	public class G_SieveTests {
+		/**
+		 * Verify the sieve finds the correct primes.
+		 *
+		 * @see PrimeFinder#sieve(int)
+		 */
+		@Test
+		@Order(1)
+		public void testSieve() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				TreeSet<Integer> actual = PrimeFinder.sieve(1000);
+				Assertions.assertEquals(KNOWN_PRIMES, actual);
+			});
+		}
+
+		/**
+		 * Test the sieve and trial division return the same results, including
+		 * small edge cases.
+		 *
+		 * @see PrimeFinder#sieve(int)
+		 */
+		@Test
+		@Order(2)
+		public void testSieveVersusTrialDivision() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				for (int max : new int[] { -1, 0, 1, 2, 3, 4, 9, 25, 3000 }) {
+					Assertions.assertEquals(PrimeFinder.trialDivision(max), PrimeFinder.sieve(max), "max = " + max);
+				}
+			});
+		}
+
+		/**
+		 * Verify the sieve counts correctly across many segments.
+		 *
+		 * @see PrimeSieve#count(int)
+		 */
+		@Test
+		@Order(3)
+		public void testSieveCount() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				Assertions.assertEquals(664579, PrimeSieve.count(10_000_000));
+				Assertions.assertEquals(105097565, PrimeSieve.count(Integer.MAX_VALUE));
+			});
+		}
+
+		/**
+		 * Test the single and multithreaded sieves return the same results across
+		 * many segments.
+		 *
+		 * @see PrimeFinder#parallelSieve(int, int)
+		 */
+		@Test
+		@Order(4)
+		public void testParallelSieve() {
+			int max = 2_000_000;
+			int threads = 3;
+
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				Assertions.assertEquals(KNOWN_PRIMES, PrimeFinder.parallelSieve(1000, threads));
+				Assertions.assertEquals(PrimeFinder.sieve(max), PrimeFinder.parallelSieve(max, threads));
+			});
+		}
+
+		/**
+		 * Verify the lazy streams find the correct primes, sequentially and in
+		 * parallel.
+		 *
+		 * @see PrimeSieve#stream(int)
+		 */
+		@Test
+		@Order(5)
+		public void testStream() {
+			int max = 10_000_000;
+
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				Assertions.assertEquals(KNOWN_PRIMES, PrimeSieve.stream(1000).boxed().collect(Collectors.toSet()));
+				Assertions.assertArrayEquals(new int[] { 2, 3, 5, 7, 11 }, PrimeSieve.stream().limit(5).toArray());
+				Assertions.assertEquals(2147483647, PrimeSieve.stream().filter(p -> p > 2147483000).max().getAsInt());
+				Assertions.assertEquals(664579, PrimeSieve.stream(max).count());
+				Assertions.assertArrayEquals(PrimeSieve.primeSet(max).toArray(), PrimeSieve.stream(max).parallel().toArray());
+
+				for (int small : new int[] { -1, 0, 1, 2, 3, 4, 127, 128, 129 }) {
+					Assertions.assertEquals(PrimeFinder.trialDivision(small), PrimeSieve.stream(small).boxed().collect(Collectors.toSet()));
+				}
+
+				PrimitiveIterator.OfInt iterator = PrimeSieve.iterator(30);
+				int sum = 0;
+
+				while (iterator.hasNext()) {
+					sum += iterator.nextInt();
+				}
+
+				Assertions.assertEquals(129, sum);
+			});
+		}
+
+		/**
+		 * Verify range queries against the sieve for small windows and against
+		 * Miller-Rabin for narrow windows of large values.
+		 *
+		 * @see PrimeSieve#stream(long, long)
+		 * @see PrimeSieve#count(long, long)
+		 */
+		@Test
+		@Order(6)
+		public void testRanges() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				PrimeSet primes = PrimeSieve.primeSet(2_000_000);
+
+				long[][] windows = { { -5, 10 }, { 2, 2 }, { 3, 3 }, { 4, 4 }, { 10, 5 }, { 1000, 2000 }, { 999_983, 1_600_001 } };
+
+				for (long[] window : windows) {
+					int lo = (int) window[0];
+					int hi = (int) window[1];
+					int[] expected = primes.range(lo, hi).toArray();
+
+					Assertions.assertArrayEquals(expected, Arrays.stream(PrimeSieve.primes(lo, hi)).mapToInt(p -> (int) p).toArray());
+					Assertions.assertEquals(expected.length, PrimeSieve.count(lo, hi));
+				}
+
+				for (long lo : new long[] { 1_000_000_000L, 999_999_000_000L, 1_000_000_000_000_000L }) {
+					long hi = lo + 100_000;
+					long[] expected = LongStream.rangeClosed(lo, hi).filter(Primality::isPrime).toArray();
+
+					Assertions.assertArrayEquals(expected, PrimeSieve.primes(lo, hi));
+					Assertions.assertArrayEquals(expected, PrimeSieve.stream(lo, hi).parallel().toArray());
+					Assertions.assertEquals(expected.length, PrimeSieve.count(lo, hi));
+				}
+
+				Assertions.assertEquals(664579 - 78498, PrimeSieve.count(1_000_000, 10_000_000));
+				Assertions.assertThrows(IllegalArgumentException.class, () -> PrimeSieve.count(0, Long.MAX_VALUE));
+			});
+		}
+
+		/**
+		 * Verify the wheel skips only multiples of 2, 3, and 5, and the sieve
+		 * unmarks the small primes covered by its pattern in every window.
+		 *
+		 * @see Wheel#forEachCandidate(int, int, java.util.function.IntConsumer)
+		 */
+		@Test
+		@Order(7)
+		public void testWheel() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				int[][] ranges = { { -5, 40 }, { 1, 1 }, { 4, 6 }, { 7, 7 }, { 8, 10 }, { 29, 31 }, { 1000, 1234 },
+						{ Integer.MAX_VALUE - 100, Integer.MAX_VALUE } };
+
+				for (int[] range : ranges) {
+					List<Integer> actual = new ArrayList<Integer>();
+					Wheel.forEachCandidate(range[0], range[1], actual::add);
+
+					List<Integer> expected = IntStream.rangeClosed(Math.max(range[0], 1), range[1])
+							.filter(i -> Wheel.coprime(i) || i == 2 || i == 3 || i == 5)
+							.boxed().collect(Collectors.toList());
+
+					Assertions.assertEquals(expected, actual, Arrays.toString(range));
+				}
+
+				Assertions.assertEquals(KNOWN_PRIMES, PrimeFinder.trialDivision(1000));
+				Assertions.assertEquals(KNOWN_PRIMES, PrimeFinder.findPrimes(1000, 3));
+
+				PrimeSet primes = PrimeSieve.primeSet(1000);
+
+				for (int lo = 0; lo <= 12; lo++) {
+					for (int hi = lo; hi <= 130; hi += 7) {
+						Assertions.assertArrayEquals(primes.range(lo, hi).toArray(),
+								Arrays.stream(PrimeSieve.primes(lo, hi)).mapToInt(p -> (int) p).toArray(), lo + ", " + hi);
+					}
+				}
+			});
+		}
+
+		/**
+		 * Verify the multithreaded window queries match the single-threaded range
+		 * queries, including windows past the largest int.
+		 *
+		 * @see PrimeFinder#countPrimes(long, long, int)
+		 * @see PrimeFinder#findPrimes(long, long, int)
+		 */
+		@Test
+		@Order(8)
+		public void testLongWindows() {
+			int threads = 3;
+
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				long[][] windows = { { -5, 10 }, { 2, 2 }, { 10, 5 }, { 0, 3_000_000 },
+						{ 4_000_000_000L, 4_002_000_000L }, { 1_000_000_000_000L, 1_000_001_000_000L },
+						{ Long.MIN_VALUE, 100 } };
+
+				for (long[] window : windows) {
+					String debug = Arrays.toString(window);
+					long[] expected = PrimeSieve.primes(window[0], window[1]);
+
+					Assertions.assertArrayEquals(expected, PrimeFinder.findPrimes(window[0], window[1], threads), debug);
+					Assertions.assertEquals(expected.length, PrimeFinder.countPrimes(window[0], window[1], threads), debug);
+				}
+
+				// wide windows are counted without sieving every value
+				Assertions.assertEquals(37607912018L, PrimeFinder.countPrimes(0, 1_000_000_000_000L, threads));
+				Assertions.assertEquals(37607912018L - 4118054813L,
+						PrimeFinder.countPrimes(100_000_000_001L, 1_000_000_000_000L, threads));
+
+				Assertions.assertThrows(IllegalArgumentException.class, () -> PrimeFinder.countPrimes(0, Long.MAX_VALUE, threads));
+				Assertions.assertThrows(IllegalArgumentException.class, () -> PrimeFinder.findPrimes(0, Long.MAX_VALUE, threads));
+			});
+		}
+
+		/**
+		 * Verify the base primes are the same whether found with the simple sieve
+		 * or one segment at a time.
+		 *
+		 * @see PrimeSieve#basePrimes(int)
+		 */
+		@Test
+		@Order(9)
+		public void testBasePrimes() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				// limits up to 524,288 use the simple sieve, so it checks the segmented one
+				int[] simple = PrimeSieve.basePrimes(524_288);
+				int[] segmented = PrimeSieve.basePrimes(3_000_000);
+
+				Assertions.assertArrayEquals(simple, Arrays.copyOf(segmented, simple.length));
+				Assertions.assertEquals(216816, segmented.length);
+
+				for (int i = simple.length; i < segmented.length; i++) {
+					Assertions.assertTrue(Primality.isPrime(segmented[i]), "prime = " + segmented[i]);
+					Assertions.assertTrue(segmented[i] > segmented[i - 1], "prime = " + segmented[i]);
+				}
+
+				for (int limit : new int[] { 0, 2, 9, 1000, 524_287, 524_289 }) {
+					int count = (int) Arrays.stream(segmented).filter(prime -> prime <= limit).count();
+					Assertions.assertArrayEquals(Arrays.copyOf(segmented, count), PrimeSieve.basePrimes(limit), "limit = " + limit);
+				}
+
+				Assertions.assertEquals(5761455, PrimeSieve.basePrimes(100_000_000).length);
+			});
+		}
+	}
+
+	/**
+	 * Tests the compact prime set matches the collection-based results.
+	 */
+	@Nested
+	@TestMethodOrder(OrderAnnotation.class)
+	public class H_PrimeSetTests {
+		/**
+		 * Verify the set view finds the correct primes.
+		 *
+		 * @see PrimeSet#asSet()
+		 */
+		@Test
+		@Order(1)
+		public void testAsSet() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				Assertions.assertEquals(KNOWN_PRIMES, PrimeSieve.primeSet(1000).asSet());
+				Assertions.assertEquals(KNOWN_PRIMES, PrimeFinder.primeSet(1000, 3).asSet());
+			});
+		}
+
+		/**
+		 * Verify count, contains, nth, and range views against a sorted array.
+		 *
+		 * @see PrimeSet
+		 */
+		@Test
+		@Order(2)
+		public void testQueries() {
+			int max = 1_000_003;
+
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				PrimeSet primes = PrimeFinder.primeSet(max, 3);
+				int[] expected = PrimeFinder.sieve(max).stream().mapToInt(Integer::intValue).toArray();
+
+				Assertions.assertEquals(expected.length, primes.count());
+				Assertions.assertArrayEquals(expected, primes.toArray());
+
+				for (int i = 1; i < expected.length; i += 997) {
+					Assertions.assertEquals(expected[i], primes.nth(i));
+					Assertions.assertTrue(primes.contains(expected[i]));
+					Assertions.assertFalse(primes.contains(expected[i] + 1));
+				}
+
+				PrimeSet range = primes.range(1000, 2000);
+				Assertions.assertEquals(135, range.count());
+				Assertions.assertEquals(1009, range.nth(0));
+				Assertions.assertEquals(1999, range.nth(134));
+				Assertions.assertFalse(range.contains(997));
+				Assertions.assertThrows(IndexOutOfBoundsException.class, () -> range.nth(135));
+			});
+		}
+
+		/**
+		 * Verify small edge cases.
+		 *
+		 * @see PrimeSet
+		 */
+		@Test
+		@Order(3)
+		public void testEdgeCases() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				for (int max : new int[] { -1, 0, 1, 2, 3, 4, 63, 127, 128, 129 }) {
+					Assertions.assertEquals(PrimeFinder.trialDivision(max), PrimeSieve.primeSet(max).asSet(), "max = " + max);
+				}
+			});
+		}
+
+		/**
+		 * Verify an interrupted caller gets an exception instead of a partly
+		 * sieved set.
+		 *
+		 * @see PrimeFinder#extend(PrimeSet, int, int)
+		 */
+		@Test
+		@Order(4)
+		public void testInterrupted() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				Thread.currentThread().interrupt();
+
+				try {
+					Assertions.assertThrows(CancellationException.class, () -> PrimeFinder.primeSet(10_000_000, 3));
+				}
+				finally {
+					Thread.interrupted();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Tests the Miller-Rabin primality test.
+	 */
+	@Nested
+	@TestMethodOrder(OrderAnnotation.class)
+	public class I_PrimalityTests {
+		/**
+		 * Verify every int up to a few million against the sieve.
+		 *
+		 * @see Primality#isPrime(int)
+		 */
+		@Test
+		@Order(1)
+		public void testIntRange() {
+			int max = 3_000_000;
+
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				PrimeSet primes = PrimeSieve.primeSet(max);
+
+				for (int i = -10; i <= max; i++) {
+					Assertions.assertEquals(primes.contains(i), Primality.isPrime(i), "value = " + i);
+					Assertions.assertEquals(primes.contains(i), Primality.isPrime((long) i), "value = " + i);
+				}
+			});
+		}
+
+		/**
+		 * Verify values near the top of the int range and known pseudoprimes.
+		 *
+		 * @see Primality#isPrime(int)
+		 */
+		@Test
+		@Order(2)
+		public void testLargeInts() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				int max = Integer.MAX_VALUE;
+				PrimeSet primes = PrimeFinder.primeSet(max, 3).range(max - 100_000, max);
+
+				for (int i = max - 100_000; i < max; i++) {
+					Assertions.assertEquals(primes.contains(i), Primality.isPrime(i), "value = " + i);
+				}
+
+				Assertions.assertTrue(Primality.isPrime(max));
+
+				// carmichael numbers and strong pseudoprimes to small bases
+				for (int value : new int[] { 561, 41041, 825265, 2047, 1373653, 25326001, 2147483643 }) {
+					Assertions.assertFalse(Primality.isPrime(value), "value = " + value);
+				}
+			});
+		}
+
+		/**
+		 * Verify known long primes, squares of primes, and strong pseudoprimes.
+		 *
+		 * @see Primality#isPrime(long)
+		 */
+		@Test
+		@Order(3)
+		public void testLongs() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				long[] primes = { 2147483659L, 4294967291L, 1000000000039L, 2305843009213693951L, 9223372036854775783L };
+				long[] composites = {
+						2147483649L, 3215031751L, 4294967297L, 4759123141L, 3825123056546413051L,
+						2147483647L * 2147483647L, 2147483647L * 4294967291L, Long.MAX_VALUE };
+
+				for (long prime : primes) {
+					Assertions.assertTrue(Primality.isPrime(prime), "value = " + prime);
+				}
+
+				for (long composite : composites) {
+					Assertions.assertFalse(Primality.isPrime(composite), "value = " + composite);
+				}
+
+				Assertions.assertFalse(Primality.isPrime(-7L));
+				Assertions.assertFalse(Primality.isPrime(Long.MIN_VALUE));
+			});
+		}
+	}
+
+	/**
+	 * Tests saving and opening prime tables.
+	 */
+	@Nested
+	@TestMethodOrder(OrderAnnotation.class)
+	public class J_PrimeTableTests {
+		/** Temporary directory for the prime tables. */
+		@TempDir
+		public Path temp;
+
+		/**
+		 * Verify a prime table opens with the same primes it was written with.
+		 *
+		 * @see PrimeTable#write(PrimeSet, Path)
+		 * @see PrimeTable#open(Path, boolean)
+		 */
+		@Test
+		@Order(1)
+		public void testRoundTrip() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				for (int max : new int[] { 0, 2, 127, 128, 1_000_003 }) {
+					Path path = temp.resolve("primes-" + max + ".bin");
+					PrimeSet expected = PrimeFinder.primeSet(max, 3);
+
+					PrimeTable.write(expected, path);
+					PrimeSet actual = PrimeTable.open(path, true);
+
+					Assertions.assertEquals(expected.max(), actual.max());
+					Assertions.assertEquals(expected.count(), actual.count());
+					Assertions.assertArrayEquals(expected.toArray(), actual.toArray());
+					Assertions.assertEquals(expected.range(1000, 2000).count(), actual.range(1000, 2000).count());
+				}
+			});
+		}
+
+		/**
+		 * Verify corrupt prime tables are rejected.
+		 *
+		 * @throws IOException if unable to write the test files
+		 */
+		@Test
+		@Order(2)
+		public void testCorrupt() throws IOException {
+			Path path = temp.resolve("primes.bin");
+			PrimeTable.write(PrimeSieve.primeSet(100_000), path);
+			byte[] original = Files.readAllBytes(path);
+
+			// flip a bit in the bitset, which only the checksum detects
+			byte[] flipped = original.clone();
+			flipped[PrimeTable.HEADER + 100] ^= 1;
+			Files.write(path, flipped);
+			Assertions.assertThrows(IOException.class, () -> PrimeTable.open(path, true));
+			Assertions.assertEquals(100_000, PrimeTable.open(path, false).max());
+
+			byte[] magic = original.clone();
+			magic[0] = 0;
+			Files.write(path, magic);
+			Assertions.assertThrows(IOException.class, () -> PrimeTable.open(path));
+
+			Files.write(path, Arrays.copyOf(original, original.length - 1));
+			Assertions.assertThrows(IOException.class, () -> PrimeTable.open(path));
+
+			Files.write(path, new byte[10]);
+			Assertions.assertThrows(IOException.class, () -> PrimeTable.open(path));
+		}
+
+		/**
+		 * Verify an existing table is reused when it is large enough, and
+		 * extended when it is not.
+		 *
+		 * @see PrimeTable#openOrCreate(Path, int, int)
+		 */
+		@Test
+		@Order(3)
+		public void testOpenOrCreate() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				Path path = temp.resolve("cache.bin");
+
+				PrimeSet created = PrimeTable.openOrCreate(path, 10_000, 3);
+				Assertions.assertEquals(1229, created.count());
+
+				PrimeSet reused = PrimeTable.openOrCreate(path, 1000, 3);
+				Assertions.assertEquals(KNOWN_PRIMES, reused.asSet());
+				Assertions.assertEquals(10_000, PrimeTable.open(path).max());
+
+				PrimeSet replaced = PrimeTable.openOrCreate(path, 20_000, 3);
+				Assertions.assertEquals(2262, replaced.count());
+				Assertions.assertEquals(20_000, PrimeTable.open(path).max());
+
+				// a table spanning several segments is extended from its prefix
+				PrimeTable.openOrCreate(path, 1_500_000, 3);
+				PrimeSet extended = PrimeTable.openOrCreate(path, 3_000_000, 3);
+				Assertions.assertEquals(PrimeFinder.primeSet(3_000_000, 3).asSet(), extended.asSet());
+				Assertions.assertEquals(216_816, PrimeTable.open(path).count());
+			});
+		}
+	}
+
+	/**
+	 * Tests counting primes without finding them.
+	 */
+	@Nested
+	@TestMethodOrder(OrderAnnotation.class)
+	public class K_PrimeCounterTests {
+		/**
+		 * Verify the count matches the sieve for small values.
+		 *
+		 * @see PrimeCounter#count(long)
+		 */
+		@Test
+		@Order(1)
+		public void testSmall() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				PrimeSet primes = PrimeSieve.primeSet(100_000);
+
+				for (int x = -1; x <= 100_000; x += x < 1000 ? 1 : 997) {
+					Assertions.assertEquals(primes.range(0, x).count(), PrimeCounter.count(x), "x = " + x);
+				}
+
+				Assertions.assertEquals(168, PrimeFinder.countPrimes(1000, 3));
+			});
+		}
+
+		/**
+		 * Verify known values of the prime-counting function, with and without
+		 * worker threads, and that values too large to count are rejected.
+		 *
+		 * @see PrimeCounter#count(long, int)
+		 */
+		@Test
+		@Order(2)
+		public void testPowersOfTen() {
+			long[] expected = { 0, 4, 25, 168, 1229, 9592, 78498, 664579, 5761455, 50847534, 455052511,
+					4118054813L, 37607912018L };
+
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				long x = 1;
+
+				for (int i = 0; i < expected.length; i++, x *= 10) {
+					Assertions.assertEquals(expected[i], PrimeCounter.count(x, 3), "x = 10^" + i);
+				}
+
+				Assertions.assertEquals(4118054813L, PrimeCounter.count(100_000_000_000L));
+				Assertions.assertEquals(105097565, PrimeFinder.countPrimes(Integer.MAX_VALUE, 2));
+
+				// values past the supported bound are rejected instead of miscounted
+				Assertions.assertThrows(IllegalArgumentException.class, () -> PrimeCounter.count(PrimeCounter.MAX + 1));
+				Assertions.assertThrows(IllegalArgumentException.class, () -> PrimeCounter.count(Long.MAX_VALUE, 3));
+			});
+		}
+
+		/**
+		 * Verify an interrupted caller gets an exception instead of a count taken
+		 * while workers were still updating it.
+		 *
+		 * @see PrimeCounter#count(long, int)
+		 */
+		@Test
+		@Order(3)
+		public void testInterrupted() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				Thread.currentThread().interrupt();
+
+				try {
+					Assertions.assertThrows(CancellationException.class, () -> PrimeCounter.count(1_000_000_000_000L, 3));
+				}
+				finally {
+					Thread.interrupted();
+				}
+			});
+		}
+
+		/**
+		 * Verify cancelling the token stops a long count part way through.
+		 *
+		 * @see PrimeCounter#count(long, int, CancellationToken)
+		 */
+		@Test
+		@Order(4)
+		public void testCancelled() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				CancellationToken cancelled = new CancellationToken();
+				cancelled.cancel();
+				Assertions.assertThrows(CancellationException.class, () -> PrimeCounter.count(1_000_000, 3, cancelled));
+
+				CancellationToken token = new CancellationToken();
+				WorkQueue caller = new WorkQueue(1);
+				Future<Long> count = caller.submit(() -> PrimeCounter.count(10_000_000_000_000L, 3, token));
+
+				Thread.sleep(200);
+				token.cancel();
+
+				ExecutionException e = Assertions.assertThrows(ExecutionException.class, count::get);
+				Assertions.assertTrue(e.getCause() instanceof CancellationException, e.getCause().toString());
+				caller.join();
+			});
+		}
+	}
+
+	/**
+	 * Tests the cache of primes.
+	 */
+	@Nested
+	@TestMethodOrder(OrderAnnotation.class)
+	public class L_PrimeCacheTests {
+		/**
+		 * Verify queries below the frontier are answered from the cache, and
+		 * queries past the frontier extend it correctly.
+		 *
+		 * @see PrimeCache#primes(int)
+		 */
+		@Test
+		@Order(1)
+		public void testQueries() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				PrimeCache cache = new PrimeCache(3);
+
+				Assertions.assertEquals(168, cache.count(1000));
+				Assertions.assertEquals(PrimeFinder.trialDivision(500), cache.findPrimes(500));
+				Assertions.assertEquals(1, cache.extensions());
+				Assertions.assertEquals(1, cache.hits());
+
+				for (int max : new int[] { 1_000_003, 3_000_017, 2_000_000 }) {
+					Assertions.assertArrayEquals(PrimeSieve.primeSet(max).toArray(), cache.primes(max).toArray(), "max = " + max);
+				}
+
+				Assertions.assertEquals(3, cache.extensions());
+				Assertions.assertEquals(3_000_017, cache.frontier());
+				Assertions.assertEquals(PrimeCache.bytes(3_000_017), cache.bytes());
+			});
+		}
+
+		/**
+		 * Verify concurrent queries past the frontier only sieve once.
+		 *
+		 * @see PrimeCache#extensions()
+		 */
+		@Test
+		@Order(2)
+		public void testCoalesce() {
+			int max = 5_000_000;
+			int expected = 348513;
+
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				PrimeCache cache = new PrimeCache(2);
+				WorkQueue queue = new WorkQueue(8);
+				CountDownLatch start = new CountDownLatch(1);
+				List<Future<Integer>> counts = new ArrayList<>();
+
+				for (int i = 0; i < 8; i++) {
+					counts.add(queue.submit(() -> {
+						start.await();
+						return cache.count(max);
+					}));
+				}
+
+				start.countDown();
+
+				for (Future<Integer> count : counts) {
+					Assertions.assertEquals(expected, count.get());
+				}
+
+				queue.join();
+				Assertions.assertEquals(1, cache.extensions());
+			});
+		}
+
+		/**
+		 * Verify the cached prefix stays within the size limit.
+		 *
+		 * @see PrimeCache#bytes()
+		 */
+		@Test
+		@Order(3)
+		public void testLimit() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				PrimeCache cache = new PrimeCache(2, PrimeCache.bytes(1_000_000));
+
+				Assertions.assertEquals(148933, cache.count(2_000_000));
+				Assertions.assertEquals(-1, cache.frontier());
+
+				Assertions.assertEquals(41538, cache.count(500_000));
+				Assertions.assertEquals(500_000, cache.frontier());
+
+				Assertions.assertEquals(148933, cache.count(2_000_000));
+				Assertions.assertEquals(500_000, cache.frontier());
+				Assertions.assertTrue(cache.bytes() <= PrimeCache.bytes(1_000_000));
+
+				cache.clear();
+				Assertions.assertEquals(0, cache.bytes());
+			});
+		}
+
+		/**
+		 * Verify an interrupted query throws instead of returning primes that are
+		 * still being sieved, and leaves nothing cached.
+		 *
+		 * @see PrimeCache#primes(int)
+		 */
+		@Test
+		@Order(4)
+		public void testInterrupted() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				PrimeCache cache = new PrimeCache(3);
+				Thread.currentThread().interrupt();
+
+				try {
+					Assertions.assertThrows(CancellationException.class, () -> cache.primes(10_000_000));
+				}
+				finally {
+					Thread.interrupted();
+				}
+
+				Assertions.assertEquals(-1, cache.frontier());
+				Assertions.assertEquals(664579, cache.count(10_000_000));
+			});
+		}
+	}
+
+	/**
+	 * Tests the factorizer against the definition of a prime factorization.
+	 */
+	@Nested
+	@TestMethodOrder(OrderAnnotation.class)
+	public class M_FactorizerTests {
+		/**
+		 * Verifies the factors are prime, in increasing order, and multiply back to
+		 * the value.
+		 *
+		 * @param value the value factored
+		 * @param factors the buffer of factors
+		 * @param count the number of factors
+		 */
+		private void assertFactors(long value, long[] factors, int count) {
+			long product = 1;
+
+			for (int i = 0; i < count; i++) {
+				Assertions.assertTrue(Primality.isPrime(factors[i]), value + ": " + factors[i]);
+				Assertions.assertTrue(i == 0 || factors[i - 1] <= factors[i], Long.toString(value));
+				product *= factors[i];
+			}
+
+			Assertions.assertEquals(value < 2 ? 1 : value, product);
+		}
+
+		/**
+		 * Verifies values covered by the table, and values past a small table.
+		 */
+		@Test
+		@Order(1)
+		public void testSmall() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				long[] factors = new long[Factorizer.MAX_FACTORS];
+
+				for (Factorizer factorizer : new Factorizer[] { new Factorizer(), new Factorizer(1000), new Factorizer(1) }) {
+					for (int value = -5; value <= 200_000; value++) {
+						assertFactors(value, factors, factorizer.factor(value, factors));
+					}
+				}
+
+				Factorizer factorizer = new Factorizer(1000);
+				Assertions.assertEquals(3, factorizer.factor(1001, factors));
+				Assertions.assertArrayEquals(new long[] { 7, 11, 13 }, Arrays.copyOf(factors, 3));
+				Assertions.assertThrows(IllegalArgumentException.class, () -> factorizer.factor(10, new long[2]));
+			});
+		}
+
+		/**
+		 * Verifies large values that need Pollard's rho.
+		 */
+		@Test
+		@Order(2)
+		public void testLarge() {
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				Factorizer factorizer = new Factorizer(1 << 16);
+				long[] factors = new long[Factorizer.MAX_FACTORS];
+
+				int count = factorizer.factor(Long.MAX_VALUE, factors);
+				Assertions.assertArrayEquals(new long[] { 7, 7, 73, 127, 337, 92737, 649657 }, Arrays.copyOf(factors, count));
+
+				count = factorizer.factor(4611686014132420609L, factors);
+				Assertions.assertArrayEquals(new long[] { 2147483647, 2147483647 }, Arrays.copyOf(factors, count));
+
+				count = factorizer.factor(1L << 62, factors);
+				Assertions.assertEquals(62, count);
+
+				long[] values = { 1_000_000_007L * 998_244_353L, 4759123141L, 3825123056546413051L, 999_999_999_999_999_989L };
+
+				for (long value : values) {
+					assertFactors(value, factors, factorizer.factor(value, factors));
+				}
+
+				Random random = new Random(212);
+
+				for (int i = 0; i < 1000; i++) {
+					long value = random.nextLong() & Long.MAX_VALUE;
+					assertFactors(value, factors, factorizer.factor(value, factors));
+				}
+			});
+		}
+
+		/**
+		 * Verifies batches match factoring one value at a time, and reuse the
+		 * buffer once it is large enough.
+		 */
+		@Test
+		@Order(3)
+		public void testBatch() {
+			int length = 10_000;
+
+			Assertions.assertTimeoutPreemptively(GLOBAL_TIMEOUT, () -> {
+				Factorizer factorizer = new Factorizer();
+				Random random = new Random(212);
+				long[] values = new long[length];
+
+				for (int i = 0; i < length; i++) {
+					values[i] = i % 2 == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextLong() >>> 20;
+				}
+
+				Factorizer.Factors single = new Factorizer.Factors();
+				Factorizer.Factors parallel = new Factorizer.Factors();
+				WorkQueue queue = new WorkQueue(3);
+
+				factorizer.factorAll(values, length, single);
+				factorizer.factorAll(values, length, parallel, queue);
+
+				long[] backing = parallel.factors();
+				factorizer.factorAll(values, length, parallel, queue);
+				queue.join();
+
+				Assertions.assertSame(backing, parallel.factors());
+				Assertions.assertEquals(length, parallel.size());
+
+				long[] factors = new long[Factorizer.MAX_FACTORS];
+
+				for (int i = 0; i < length; i++) {
+					int count = factorizer.factor(values[i], factors);
+
+					Assertions.assertEquals(count, single.count(i));
+					Assertions.assertEquals(count, parallel.count(i));
+
+					for (int k = 0; k < count; k++) {
+						Assertions.assertEquals(factors[k], single.get(i, k));
+						Assertions.assertEquals(factors[k], parallel.factors()[parallel.offset(i) + k]);
+					}
+				}
+
+				factorizer.factorAll(values, 0, parallel);
+				Assertions.assertEquals(0, parallel.size());
+				Assertions.assertThrows(IndexOutOfBoundsException.class, () -> parallel.count(0));
+			});
+		}
+	}
+
 	/**
 	 * Used to benchmark code. Benchmarking results may be inconsistent, and are
 	 * written to favor multithreading.